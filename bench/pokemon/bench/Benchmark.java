@@ -0,0 +1,164 @@
+package pokemon.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Very small benchmark runner, we don't want a library for this. Each
+ * benchmark runs for a warmup time so the JIT compiles it, then for a few
+ * measured rounds. The result is the mean time of one operation and its
+ * standard deviation over the rounds.
+ * </p>
+ *
+ * <p>
+ * Options are system properties:
+ * <ul>
+ * <li>bench.filter: regex on benchmark names, all by default
+ * <li>bench.warmup: warmup time in milliseconds, 1000 by default
+ * <li>bench.time: time of a measured round in milliseconds, 500 by default
+ * <li>bench.rounds: number of measured rounds, 5 by default
+ * </ul>
+ * </p>
+ */
+public class Benchmark {
+
+	private static final long WARMUP_MS = Long.getLong("bench.warmup", 1000);
+	private static final long ROUND_MS = Long.getLong("bench.time", 500);
+	private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+	private static final Pattern FILTER = Pattern.compile(System.getProperty("bench.filter", ".*"));
+
+	// Results go there so the JIT cannot remove the benchmarked code
+	private static volatile Object sink;
+	private static volatile long longSink;
+
+	private List<Result> results;
+
+	public Benchmark() {
+		this.results = new ArrayList<Result>();
+	}
+
+	@FunctionalInterface
+	public interface Task {
+		/**
+		 * Runs the benchmarked code once
+		 *
+		 * @throws Exception anything, the benchmark stops
+		 */
+		void run() throws Exception;
+	}
+
+	/**
+	 * Keeps a value alive, call it with the result of the benchmarked code
+	 */
+	public static void consume(Object value) {
+		sink = value;
+	}
+
+	public static void consume(long value) {
+		longSink += value;
+	}
+
+	/**
+	 * Runs a benchmark if its name matches the filter
+	 *
+	 * @param name  the name printed in the results
+	 * @param bytes number of bytes processed by one operation, to print a
+	 *              throughput, 0 if it does not make sense
+	 * @param task  the benchmarked code
+	 * @throws Exception if the task fails
+	 */
+	public void run(String name, long bytes, Task task) throws Exception {
+		if (!FILTER.matcher(name).find()) {
+			return;
+		}
+
+		// Also finds how many operations fit in a round, the clock is read once per
+		// batch only
+		long batchSize = 1;
+		long warmupEnd = System.nanoTime() + WARMUP_MS * 1_000_000;
+		while (System.nanoTime() < warmupEnd) {
+			long time = runBatch(task, batchSize);
+			if (time < 10_000_000) {
+				batchSize <<= 1;
+			}
+		}
+
+		double[] roundTimes = new double[ROUNDS];
+		for (int round = 0; round < ROUNDS; round++) {
+			long operations = 0;
+			long time = 0;
+			while (time < ROUND_MS * 1_000_000) {
+				time += runBatch(task, batchSize);
+				operations += batchSize;
+			}
+			roundTimes[round] = (double) time / operations;
+		}
+
+		Result result = new Result(name, bytes, roundTimes);
+		results.add(result);
+		System.out.println(result);
+	}
+
+	private static long runBatch(Task task, long batchSize) throws Exception {
+		long start = System.nanoTime();
+		for (long i = 0; i < batchSize; i++) {
+			task.run();
+		}
+		return System.nanoTime() - start;
+	}
+
+	public List<Result> getResults() {
+		return results;
+	}
+
+	public static class Result {
+
+		private String name;
+		private long bytes;
+		private double mean;
+		private double deviation;
+
+		public Result(String name, long bytes, double[] roundTimes) {
+			this.name = name;
+			this.bytes = bytes;
+
+			double sum = 0;
+			for (double time : roundTimes) {
+				sum += time;
+			}
+			this.mean = sum / roundTimes.length;
+
+			double squares = 0;
+			for (double time : roundTimes) {
+				squares += (time - mean) * (time - mean);
+			}
+			this.deviation = Math.sqrt(squares / roundTimes.length);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return mean time of one operation in nanoseconds
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		@Override
+		public String toString() {
+			String line = String.format(Locale.ROOT, "%-40s %14.1f ns/op  +- %5.1f%%", name, mean,
+					100 * deviation / mean);
+			if (bytes > 0) {
+				// Bytes per nanosecond is GB/s, shown in MiB/s
+				line += String.format(Locale.ROOT, "  %10.1f MiB/s", bytes / mean * 1e9 / (1 << 20));
+			}
+			return line;
+		}
+	}
+
+}
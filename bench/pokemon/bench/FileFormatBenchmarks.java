@@ -0,0 +1,222 @@
+package pokemon.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import pokemon.files.DSFileManager;
+import pokemon.files.archive.MappedNARC;
+import pokemon.files.archive.NARC;
+import pokemon.files.graphics.GraphicResources.ColorBitDepth;
+import pokemon.files.graphics.NCGR;
+import pokemon.files.graphics.NCLR;
+import pokemon.files.graphics.NSCR;
+import pokemon.files.types.TypeEnum;
+import pokemon.files.types.TypedArray;
+import pokemon.files.types.TypedNumber;
+import pokemon.logic.Palette;
+import pokemon.logic.ScreenData;
+import pokemon.logic.ScreenMap;
+import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
+
+/**
+ * Benchmarks of the file format code: reading and writing numbers, loading the
+ * graphic files, packing and extracting archives and rendering screens. Run it
+ * with the classes of src and bench in the class path, options are described
+ * in {@link Benchmark}.
+ */
+public class FileFormatBenchmarks {
+
+	private static final long SEED = 0x4E415243;
+
+	private static final int ARRAY_LENGTH = 0x1000;
+	private static final int TILE_X = 32;
+	private static final int TILE_Y = 32;
+	private static final int SCREEN_WIDTH = 32;
+	private static final int SCREEN_HEIGHT = 24;
+	private static final int ARCHIVE_FILE_NUMBER = 256;
+	private static final int ARCHIVE_FILE_SIZE = 0x800;
+
+	public static void main(String[] args) throws Exception {
+		SyntheticData data = new SyntheticData(SEED);
+		Benchmark benchmark = new Benchmark();
+
+		benchmarkDSFileManager(benchmark, data);
+		benchmarkTypedArray(benchmark, data);
+		benchmarkGraphicFiles(benchmark, data);
+		benchmarkScreen(benchmark, data);
+
+		Path workDir = Files.createTempDirectory("pokemon-bench");
+		try {
+			benchmarkNARC(benchmark, data, workDir.toFile());
+		} finally {
+			deleteRecursively(workDir);
+		}
+	}
+
+	private static void benchmarkDSFileManager(Benchmark benchmark, SyntheticData data) throws Exception {
+		byte[] bytes = data.randomBytes(ARRAY_LENGTH * TypeEnum.UINT32.getByteSize());
+		ByteArrayInputStream inStream = new ByteArrayInputStream(bytes);
+		benchmark.run("DSFileManager.read UINT32", 4, () -> {
+			if (inStream.available() < 4) {
+				inStream.reset();
+			}
+			Benchmark.consume(DSFileManager.read(inStream, TypeEnum.UINT32).getValue());
+		});
+
+		benchmark.run("DSFileManager.read UINT16[]", ARRAY_LENGTH * 2, () -> {
+			inStream.reset();
+			Benchmark.consume(DSFileManager.read(inStream, TypeEnum.UINT16, ARRAY_LENGTH));
+		});
+
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream(bytes.length);
+		TypedNumber number = new TypedNumber(0x12345678, TypeEnum.UINT32);
+		benchmark.run("DSFileManager.write UINT32", 4, () -> {
+			if (outStream.size() >= bytes.length) {
+				outStream.reset();
+			}
+			DSFileManager.write(outStream, number);
+		});
+
+		TypedArray array = DSFileManager.read(new ByteArrayInputStream(bytes), TypeEnum.UINT16, ARRAY_LENGTH);
+		benchmark.run("DSFileManager.write UINT16[]", ARRAY_LENGTH * 2, () -> {
+			outStream.reset();
+			DSFileManager.write(outStream, array);
+		});
+	}
+
+	private static void benchmarkTypedArray(Benchmark benchmark, SyntheticData data) throws Exception {
+		TypedArray array = new TypedArray(TypeEnum.UINT16, ARRAY_LENGTH);
+		short[] values = new short[ARRAY_LENGTH];
+		byte[] random = data.randomBytes(ARRAY_LENGTH);
+		for (int i = 0; i < ARRAY_LENGTH; i++) {
+			values[i] = (short) (random[i] * 31);
+		}
+
+		benchmark.run("TypedArray.setValue", ARRAY_LENGTH * 2, () -> {
+			for (int i = 0; i < ARRAY_LENGTH; i++) {
+				array.setValue(values[i], i);
+			}
+		});
+
+		benchmark.run("TypedArray.getIntValue", ARRAY_LENGTH * 2, () -> {
+			long sum = 0;
+			for (int i = 0; i < ARRAY_LENGTH; i++) {
+				sum += array.getIntValue(i);
+			}
+			Benchmark.consume(sum);
+		});
+
+		benchmark.run("TypedArray.setValues short[]", ARRAY_LENGTH * 2, () -> array.setValues(values));
+		benchmark.run("TypedArray.getShortValues", ARRAY_LENGTH * 2,
+				() -> Benchmark.consume(array.getShortValues()));
+	}
+
+	private static void benchmarkGraphicFiles(Benchmark benchmark, SyntheticData data) throws Exception {
+		byte[] nclrBytes = data.createNCLR();
+		benchmark.run("NCLR.load", nclrBytes.length, () -> {
+			NCLR nclr = new NCLR();
+			nclr.load(new ByteArrayInputStream(nclrBytes));
+			Benchmark.consume(nclr.createPalette());
+		});
+
+		for (ColorBitDepth colorBitDepth : ColorBitDepth.values()) {
+			byte[] ncgrBytes = data.createNCGR(TILE_X, TILE_Y, colorBitDepth);
+			benchmark.run("NCGR.load " + colorBitDepth, ncgrBytes.length, () -> {
+				NCGR ncgr = new NCGR();
+				ncgr.load(new ByteArrayInputStream(ncgrBytes));
+				Benchmark.consume(ncgr.getTileSheet());
+			});
+
+			NCGR loadedNcgr = new NCGR();
+			loadedNcgr.load(new ByteArrayInputStream(ncgrBytes));
+			ByteArrayOutputStream ncgrStream = new ByteArrayOutputStream(ncgrBytes.length);
+			benchmark.run("NCGR.store " + colorBitDepth, ncgrBytes.length, () -> {
+				ncgrStream.reset();
+				loadedNcgr.store(ncgrStream);
+				Benchmark.consume(ncgrStream.size());
+			});
+		}
+
+		byte[] nscrBytes = data.createNSCR(SCREEN_WIDTH, SCREEN_HEIGHT);
+		benchmark.run("NSCR.load", nscrBytes.length, () -> {
+			NSCR nscr = new NSCR();
+			nscr.load(new ByteArrayInputStream(nscrBytes));
+			Benchmark.consume(nscr.createScreenMap());
+		});
+	}
+
+	private static void benchmarkScreen(Benchmark benchmark, SyntheticData data) throws Exception {
+		NCLR nclr = new NCLR();
+		nclr.load(new ByteArrayInputStream(data.createNCLR()));
+		Palette palette = nclr.createPalette();
+
+		NCGR ncgr = new NCGR();
+		ncgr.load(new ByteArrayInputStream(data.createNCGR(16, 16, ColorBitDepth.FOUR_BIT_DEPTH)));
+		TileSheet tileSheet = ncgr.getTileSheet();
+		Tile[] tiles = new Tile[tileSheet.getTileNumber()];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = tileSheet.getTile(i);
+		}
+
+		NSCR nscr = new NSCR();
+		nscr.load(new ByteArrayInputStream(data.createNSCR(SCREEN_WIDTH, SCREEN_HEIGHT)));
+		ScreenData[] screenData = nscr.createScreenData();
+		ScreenMap screenMap = nscr.createScreenMap();
+
+		// One operation renders the whole screen
+		benchmark.run("ScreenData.processTile", 0, () -> {
+			for (ScreenData cell : screenData) {
+				Benchmark.consume(cell.processTile(tiles, palette));
+			}
+		});
+
+		int[] colors = palette.getColors();
+		int[] pixels = new int[TileSheet.PIXELS_PER_TILE];
+		benchmark.run("ScreenMap.processTile", 0, () -> {
+			for (int i = 0; i < screenMap.length(); i++) {
+				screenMap.processTile(i, tileSheet, colors, pixels);
+			}
+			Benchmark.consume(pixels);
+		});
+	}
+
+	private static void benchmarkNARC(Benchmark benchmark, SyntheticData data, File workDir) throws Exception {
+		// NARC packs the directory named like the archive, next to it
+		data.createArchiveDir(new File(workDir, "archive"), ARCHIVE_FILE_NUMBER, ARCHIVE_FILE_SIZE);
+		File archiveFile = new File(workDir, "archive.narc");
+		long archiveBytes = (long) ARCHIVE_FILE_NUMBER * ARCHIVE_FILE_SIZE;
+		// Extraction needs the archive even when packing is filtered out
+		new NARC(archiveFile).createArchive();
+
+		benchmark.run("NARC.createArchive", archiveBytes, () -> {
+			Files.deleteIfExists(archiveFile.toPath());
+			new NARC(archiveFile).createArchive();
+		});
+
+		File extractDir = new File(workDir, "extracted");
+		try (MappedNARC narc = new MappedNARC(archiveFile)) {
+			benchmark.run("MappedNARC.extractAll", archiveBytes, () -> narc.extractAll(extractDir));
+
+			int parallelism = Runtime.getRuntime().availableProcessors();
+			benchmark.run("MappedNARC.extractAll x" + parallelism, archiveBytes,
+					() -> narc.extractAll(extractDir, parallelism, _ -> {
+					}));
+		}
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package pokemon.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import pokemon.files.graphics.GraphicResources.ColorBitDepth;
+import pokemon.files.graphics.NCLR;
+import pokemon.files.graphics.NSCR;
+
+/**
+ * Generates files for benchmarks. Everything comes from a seeded random, so
+ * every run works on the same data and no ROM is needed.
+ */
+public class SyntheticData {
+
+	private static final int GENERIC_HEADER_SIZE = 0x10;
+	private static final int RAHC_HEADER_SIZE = 0x20;
+
+	private Random random;
+
+	public SyntheticData(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public byte[] randomBytes(int size) {
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Bytes that compress a bit, like real graphics: short random runs
+	 */
+	public byte[] compressibleBytes(int size) {
+		byte[] data = new byte[size];
+		int i = 0;
+		while (i < size) {
+			int runLength = 1 + random.nextInt(16);
+			byte value = (byte) random.nextInt(16);
+			for (int j = 0; j < runLength && i < size; j++) {
+				data[i++] = value;
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * @return a 16 palettes NCLR file
+	 */
+	public byte[] createNCLR() throws IOException {
+		NCLR nclr = new NCLR(ColorBitDepth.FOUR_BIT_DEPTH, 0x100, false);
+		for (int i = 0; i < 0x100; i++) {
+			nclr.setColor(new java.awt.Color(random.nextInt(0x1000000)), i);
+		}
+
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		nclr.store(outStream);
+		return outStream.toByteArray();
+	}
+
+	/**
+	 * Written by hand, the same layout as the game files
+	 *
+	 * @param tileX         number of tiles in a row
+	 * @param tileY         number of tiles in a column
+	 * @param colorBitDepth the depth of the pixels
+	 * @return a NCGR file without SOPC
+	 */
+	public byte[] createNCGR(int tileX, int tileY, ColorBitDepth colorBitDepth) {
+		int dataSize = tileX * tileY * 64;
+		if (colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH) {
+			dataSize >>= 1;
+		}
+		int rahcSize = RAHC_HEADER_SIZE + dataSize;
+		ByteBuffer buffer = ByteBuffer.allocate(GENERIC_HEADER_SIZE + rahcSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.put("RGCN".getBytes(StandardCharsets.US_ASCII));
+		buffer.putShort((short) 0xFEFF).putShort((short) 0x0101);
+		buffer.putInt(GENERIC_HEADER_SIZE + rahcSize);
+		buffer.putShort((short) GENERIC_HEADER_SIZE).putShort((short) 1);
+
+		buffer.put("RAHC".getBytes(StandardCharsets.US_ASCII));
+		buffer.putInt(rahcSize);
+		buffer.putShort((short) tileY).putShort((short) tileX);
+		buffer.putInt(colorBitDepth.getBitDepthValue());
+		buffer.putShort((short) 0).putShort((short) 0);
+		buffer.putInt(0); // Tiled layout
+		buffer.putInt(dataSize);
+		buffer.putInt(0x18);
+		buffer.put(randomBytes(dataSize));
+
+		return buffer.array();
+	}
+
+	/**
+	 * @param width  width in tiles
+	 * @param height height in tiles
+	 * @return a NSCR using 256 tiles and all palettes, with flips
+	 */
+	public byte[] createNSCR(int width, int height) throws IOException {
+		int[] screenData = new int[width * height];
+		for (int i = 0; i < screenData.length; i++) {
+			screenData[i] = random.nextInt(0x10000) & ~0x300;
+		}
+
+		NSCR nscr = new NSCR(width << 3, height << 3, screenData);
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		nscr.store(outStream);
+		return outStream.toByteArray();
+	}
+
+	/**
+	 * Creates a directory to pack, with a few sub directories
+	 *
+	 * @param dir       the directory to fill
+	 * @param fileCount number of files
+	 * @param fileSize  size of each file
+	 */
+	public void createArchiveDir(File dir, int fileCount, int fileSize) throws IOException {
+		Files.createDirectories(dir.toPath());
+		for (int i = 0; i < fileCount; i++) {
+			File subDir = i % 4 == 0 ? dir : new File(dir, "dir" + (i % 4));
+			Files.createDirectories(subDir.toPath());
+			Files.write(new File(subDir, "file%04d.bin".formatted(i)).toPath(), compressibleBytes(fileSize));
+		}
+	}
+
+}
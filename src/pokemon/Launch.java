@@ -4,15 +4,23 @@ import java.io.File;
 import java.io.IOException;
 
 import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
+import pokemon.cli.CommandLine;
 import pokemon.frame.MainFrame;
 
 public class Launch {
 
 	public static void main(String[] args) throws IOException {
-		// Choose the ROM folder
+		// With arguments, batch mode without window
+		if (args.length > 0) {
+			System.exit(CommandLine.run(args));
+		}
+
+		// Choose the extracted ROM folder, or the ROM itself (read without extracting)
 		JFileChooser chooser = new JFileChooser();
-		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+		chooser.setFileFilter(new FileNameExtensionFilter("NDS ROM or folder", "nds"));
 		int answer = chooser.showOpenDialog(null);
 		if (answer == JFileChooser.APPROVE_OPTION) {
 			File selectedFile = chooser.getSelectedFile();
@@ -0,0 +1,102 @@
+package pokemon.cli;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task on a list of files with a pool of workers, and prints the time
+ * spent on each file. A file that fails does not stop the others.
+ */
+public class BatchRunner {
+
+	private int parallelism;
+	private PrintStream out;
+	private PrintStream err;
+
+	@FunctionalInterface
+	public interface FileTask {
+		/**
+		 * Processes one file, called from the workers
+		 *
+		 * @param file the file to process
+		 * @return what was written, printed after the file, or null if the file has
+		 *         been skipped
+		 * @throws Exception if the file cannot be processed
+		 */
+		String process(File file) throws Exception;
+	}
+
+	public BatchRunner(int parallelism, PrintStream out, PrintStream err) {
+		this.parallelism = Math.max(1, parallelism);
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * Processes all files and waits for the end.
+	 *
+	 * @param files the files to process
+	 * @param task  what to do with each file
+	 * @return the number of files that failed
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public int run(List<File> files, FileTask task) throws InterruptedException {
+		AtomicInteger failures = new AtomicInteger();
+		AtomicInteger skipped = new AtomicInteger();
+		long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, files.size())));
+		List<Future<?>> futures = new ArrayList<Future<?>>(files.size());
+		try {
+			for (File file : files) {
+				futures.add(executor.submit(() -> {
+					long fileStart = System.nanoTime();
+					try {
+						String result = task.process(file);
+						if (result == null) {
+							skipped.incrementAndGet();
+						}
+						print(out, "%10s  %s %s".formatted(formatTime(fileStart), file,
+								result == null ? "skipped" : "-> " + result));
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						print(err, "%10s  %s FAILED: %s".formatted(formatTime(fileStart), file, e));
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			// Errors are caught in the task, only Error can go there
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		print(out, "%d files in %s (%d skipped, %d failed, %d workers)".formatted(files.size(), formatTime(start),
+				skipped.get(), failures.get(), parallelism));
+		return failures.get();
+	}
+
+	private static String formatTime(long start) {
+		return String.format(Locale.ROOT, "%.2f ms", (System.nanoTime() - start) / 1e6);
+	}
+
+	// One line at once, workers print at the same time
+	private static void print(PrintStream stream, String line) {
+		synchronized (stream) {
+			stream.println(line);
+		}
+	}
+
+}
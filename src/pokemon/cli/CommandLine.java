@@ -0,0 +1,523 @@
+package pokemon.cli;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import pokemon.files.DetectedFormat;
+import pokemon.files.FileFormat;
+import pokemon.files.FormatDetector;
+import pokemon.files.FormatEnum;
+import pokemon.files.archive.BLZCodec;
+import pokemon.files.archive.Codec;
+import pokemon.files.archive.CompressionMethodEnum;
+import pokemon.files.archive.LZCodec;
+import pokemon.files.archive.MappedNARC;
+import pokemon.files.archive.NARC;
+import pokemon.files.graphics.NCGR;
+import pokemon.files.graphics.NCLR;
+import pokemon.files.graphics.NSCR;
+import pokemon.logic.Palette;
+
+/**
+ * <p>
+ * Batch mode without any window, used when the editor is launched with
+ * arguments: {@code <command> [options] <paths...>}. Directories given to
+ * extract, png, compress and decompress are searched recursively, and all the
+ * files are processed in parallel.
+ * </p>
+ *
+ * <p>
+ * The exit code is 0 if everything worked, 1 if a file failed and 2 if the
+ * command line is wrong.
+ * </p>
+ */
+public class CommandLine {
+
+	private static final String USAGE = """
+			usage: <command> [options] <paths...>
+			       help
+
+			commands:
+			  extract     extract the NARC archives, next to them or in the output directory
+			  pack        pack each directory in a NARC archive named like it
+			  png         export palettes (NCLR), tiles (NCGR) and screens (NSCR) to PNG
+			  compress    compress each file to <file>.<method>, compressed files are skipped
+			  decompress  decompress LZ, LZ11 and BLZ files to <file> without .<method> (else
+			              <file>.dec), other files are skipped
+
+			options:
+			  -j <n>       number of files processed at the same time (default: number of processors)
+			  -o <dir>     output directory, the tree and the names of the inputs are kept
+			  -c <method>  compression: none, lz, lz11 or blz (pack: none, compress: lz, decompress: detected)
+			  -n           pack: write the file names in the archive
+			  -p <file>    png: palette of the tiles and screens (default: the NCLR named like the file, else gray)
+			  -t <file>    png: tiles of the screens (default: the NCGR named like the screen)
+			""";
+
+	private static final int EXIT_SUCCESS = 0;
+	private static final int EXIT_FAILURE = 1;
+	private static final int EXIT_USAGE = 2;
+
+	private enum Command {
+		EXTRACT, PACK, PNG, COMPRESS, DECOMPRESS
+	}
+
+	private PrintStream out;
+	private PrintStream err;
+
+	private Command command;
+	private int parallelism;
+	private File outputDir;
+	private CompressionMethodEnum compressionMethod;
+	private boolean doWriteFileNames;
+	private File paletteFile;
+	private File tilesFile;
+	private List<File> paths;
+
+	// Input directory (or file) each file was found in, to rebuild the tree in the
+	// output directory
+	private Map<File, File> inputRoots;
+
+	private Palette palette;
+	private NCGR tiles;
+
+	public CommandLine(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.paths = new ArrayList<File>();
+		this.inputRoots = new HashMap<File, File>();
+	}
+
+	/**
+	 * Runs the command line, nothing needs a display.
+	 *
+	 * @param args the arguments of the application
+	 * @return the exit code
+	 */
+	public static int run(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		return new CommandLine(System.out, System.err).execute(args);
+	}
+
+	public int execute(String[] args) {
+		if (args.length == 1 && (args[0].equals("help") || args[0].equals("-h"))) {
+			out.print(USAGE);
+			return EXIT_SUCCESS;
+		}
+
+		try {
+			parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.print(USAGE);
+			return EXIT_USAGE;
+		}
+
+		try {
+			loadSharedFiles();
+			List<File> files = collectFiles();
+			BatchRunner runner = new BatchRunner(parallelism, out, err);
+			int failures = runner.run(files, switch (command) {
+			case EXTRACT -> this::extract;
+			case PACK -> this::pack;
+			case PNG -> this::exportPNG;
+			case COMPRESS -> this::compress;
+			case DECOMPRESS -> this::decompress;
+			});
+			return failures == 0 ? EXIT_SUCCESS : EXIT_FAILURE;
+		} catch (IOException e) {
+			err.println(e.getMessage());
+			return EXIT_FAILURE;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return EXIT_FAILURE;
+		} finally {
+			// Detected formats are kept for the next time
+			FormatDetector.getInstance().flush();
+		}
+	}
+
+	private void parseArguments(String[] args) {
+		if (args.length == 0) {
+			throw new IllegalArgumentException("No command");
+		}
+
+		try {
+			command = Command.valueOf(args[0].toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown command " + args[0]);
+		}
+
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+			case "-j":
+				try {
+					parallelism = Integer.parseInt(getValue(args, ++i, arg));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("-j needs a number");
+				}
+				if (parallelism < 1) {
+					throw new IllegalArgumentException("-j needs at least 1 worker");
+				}
+				break;
+
+			case "-o":
+				outputDir = new File(getValue(args, ++i, arg));
+				break;
+
+			case "-c":
+				try {
+					compressionMethod = CompressionMethodEnum.valueOf(getValue(args, ++i, arg).toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown compression " + args[i]);
+				}
+				break;
+
+			case "-n":
+				doWriteFileNames = true;
+				break;
+
+			case "-p":
+				paletteFile = new File(getValue(args, ++i, arg));
+				break;
+
+			case "-t":
+				tilesFile = new File(getValue(args, ++i, arg));
+				break;
+
+			default:
+				if (arg.startsWith("-")) {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+				paths.add(new File(arg));
+				break;
+			}
+		}
+
+		if (paths.isEmpty()) {
+			throw new IllegalArgumentException("No file to process");
+		}
+
+		if (compressionMethod == null) {
+			compressionMethod = command == Command.COMPRESS ? CompressionMethodEnum.LZ : CompressionMethodEnum.NONE;
+		} else if (command == Command.COMPRESS && compressionMethod == CompressionMethodEnum.NONE) {
+			throw new IllegalArgumentException("Nothing to do without compression");
+		}
+	}
+
+	private static String getValue(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(option + " needs a value");
+		}
+
+		return args[index];
+	}
+
+	private void loadSharedFiles() throws IOException {
+		if (paletteFile != null) {
+			palette = ((NCLR) load(paletteFile, FormatEnum.PALETTE)).createPalette();
+		}
+		if (tilesFile != null) {
+			tiles = (NCGR) load(tilesFile, FormatEnum.TILE);
+		}
+	}
+
+	/**
+	 * Lists the files to process. Directories are searched for the files the
+	 * command can use, except for pack which takes the directories themselves.
+	 */
+	private List<File> collectFiles() throws IOException {
+		Predicate<File> filter = switch (command) {
+		case EXTRACT -> file -> isFormat(file, FormatEnum.ARCHIVE, false);
+		case PNG -> file -> isFormat(file, FormatEnum.PALETTE, true) || isFormat(file, FormatEnum.TILE, true)
+				|| isFormat(file, FormatEnum.SCREEN, true);
+		default -> _ -> true;
+		};
+
+		List<File> files = new ArrayList<File>();
+		for (File path : paths) {
+			if (!path.exists()) {
+				throw new IOException("%s does not exist".formatted(path));
+			}
+
+			if (command == Command.PACK || !path.isDirectory()) {
+				files.add(path);
+				inputRoots.put(path, path);
+				continue;
+			}
+
+			try (Stream<Path> walk = Files.walk(path.toPath())) {
+				for (Path found : walk.filter(Files::isRegularFile).sorted().toList()) {
+					File file = found.toFile();
+					if (filter.test(file)) {
+						files.add(file);
+						inputRoots.put(file, path);
+					}
+				}
+			}
+		}
+
+		return files;
+	}
+
+	private static boolean isFormat(File file, FormatEnum format, boolean allowCompressed) {
+		try {
+			DetectedFormat detectedFormat = FormatDetector.getInstance().detect(file);
+			return detectedFormat.getFormat() == format && (allowCompressed || !detectedFormat.isCompressed());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param file the processed file
+	 * @param name the name of the written file
+	 * @return the written file: next to the processed file, or at the same place
+	 *         in the output directory
+	 */
+	private File getOutputFile(File file, String name) {
+		if (outputDir == null) {
+			return new File(file.getAbsoluteFile().getParentFile(), name);
+		}
+
+		File root = inputRoots.get(file);
+		File dir = outputDir;
+		if (root != null && root.isDirectory() && !root.equals(file)) {
+			Path relativeDir = root.toPath().relativize(file.toPath()).getParent();
+			if (relativeDir != null) {
+				dir = outputDir.toPath().resolve(relativeDir).toFile();
+			}
+		}
+
+		return new File(dir, name);
+	}
+
+	private static String getBaseName(File file) {
+		String name = file.getName();
+		int lastPointIndex = name.lastIndexOf('.');
+		return lastPointIndex == -1 ? name : name.substring(0, lastPointIndex);
+	}
+
+	/**
+	 * Loads a graphic file, decompressed if needed, as in the editor.
+	 */
+	private static FileFormat load(File file, FormatEnum expectedFormat) throws IOException {
+		DetectedFormat detectedFormat = FormatDetector.getInstance().detect(file);
+		if (detectedFormat.getFormat() != expectedFormat) {
+			throw new IOException("%s is not a %s file (%s)".formatted(file, expectedFormat, detectedFormat));
+		}
+
+		FileFormat fileFormat = switch (expectedFormat) {
+		case PALETTE -> new NCLR();
+		case TILE -> new NCGR();
+		case SCREEN -> new NSCR();
+		default -> throw new IOException("%s cannot be loaded".formatted(expectedFormat));
+		};
+
+		try (InputStream fileStream = new BufferedInputStream(new FileInputStream(file))) {
+			InputStream inStream = fileStream;
+			if (detectedFormat.isCompressed()) {
+				byte[] data = detectedFormat.getCompressionMethod().getCodec().decompress(fileStream);
+				inStream = new ByteArrayInputStream(data);
+			}
+			fileFormat.load(inStream);
+		}
+
+		return fileFormat;
+	}
+
+	private String extract(File file) throws IOException {
+		try (MappedNARC narc = new MappedNARC(file)) {
+			File destDir = outputDir == null ? narc.getExtractDir(file) : getOutputFile(file, narc.getBaseName());
+			narc.extractAll(destDir);
+			return "%s (%d files)".formatted(destDir, narc.getFileNumber());
+		}
+	}
+
+	private String pack(File dir) throws IOException {
+		if (!dir.isDirectory()) {
+			throw new IOException("Not a directory");
+		}
+
+		// Written in a temporary file next to the destination, then renamed, so a
+		// failed pack leaves the previous archive as it was
+		File absoluteDir = dir.getAbsoluteFile();
+		File destFile = getOutputFile(absoluteDir, absoluteDir.getName() + ".narc").getAbsoluteFile();
+		if (destFile.toPath().normalize().startsWith(absoluteDir.toPath().normalize())) {
+			throw new IOException("The archive cannot be written in the packed directory");
+		}
+
+		Files.createDirectories(destFile.getParentFile().toPath());
+		Path tempFile = destFile.toPath().resolveSibling(destFile.getName() + ".tmp");
+		try {
+			new NARC(absoluteDir, tempFile.toFile(), doWriteFileNames, compressionMethod).createArchive();
+			Files.move(tempFile, destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+		return destFile.toString();
+	}
+
+	private String exportPNG(File file) throws IOException {
+		FormatEnum format = FormatDetector.getInstance().detect(file).getFormat();
+		File pngFile = getOutputFile(file, file.getName() + ".png");
+
+		BufferedImage image;
+		switch (format) {
+		case PALETTE:
+			image = GraphicExporter.renderPalette(((NCLR) load(file, format)).createPalette());
+			break;
+
+		case TILE:
+			NCGR ncgr = (NCGR) load(file, format);
+			image = GraphicExporter.renderTiles(ncgr.getTileSheet(), ncgr.getTileX(), getPalette(file, ncgr), 0);
+			break;
+
+		case SCREEN:
+			NSCR nscr = (NSCR) load(file, format);
+			NCGR screenTiles = getTiles(file);
+			image = GraphicExporter.renderScreen(nscr.createScreenMap(), getPalette(file, screenTiles),
+					screenTiles.getTileSheet());
+			break;
+
+		default:
+			throw new IOException("Not a palette, tile or screen file");
+		}
+
+		Files.createDirectories(pngFile.getAbsoluteFile().getParentFile().toPath());
+		if (!ImageIO.write(image, "png", pngFile)) {
+			throw new IOException("No PNG writer");
+		}
+		return pngFile.toString();
+	}
+
+	/**
+	 * The palette of the command line, else the palette named like the file, else
+	 * shades of gray
+	 */
+	private Palette getPalette(File file, NCGR ncgr) throws IOException {
+		if (palette != null) {
+			return palette;
+		}
+
+		File sibling = new File(file.getAbsoluteFile().getParentFile(), getBaseName(file) + ".nclr");
+		if (sibling.isFile()) {
+			return ((NCLR) load(sibling, FormatEnum.PALETTE)).createPalette();
+		}
+
+		return GraphicExporter.createGrayPalette(ncgr.getColorBitDepth());
+	}
+
+	private NCGR getTiles(File screenFile) throws IOException {
+		if (tiles != null) {
+			return tiles;
+		}
+
+		File sibling = new File(screenFile.getAbsoluteFile().getParentFile(), getBaseName(screenFile) + ".ncgr");
+		if (!sibling.isFile()) {
+			throw new IOException("No tiles for the screen, give them with -t");
+		}
+
+		return (NCGR) load(sibling, FormatEnum.TILE);
+	}
+
+	private String compress(File file) throws IOException {
+		byte[] data = Files.readAllBytes(file.toPath());
+		// Compressed twice is useless, and a directory is compressed again and again
+		if (detectAndDecompress(ByteBuffer.wrap(data)) != null) {
+			return null;
+		}
+
+		// Inputs are never overwritten, without output directory the method is added
+		// to the name
+		String name = outputDir == null ? file.getName() + getExtension(compressionMethod) : file.getName();
+		File destFile = getOutputFile(file, name);
+		write(destFile, compressionMethod.getCodec().compress(data));
+		return "%s (%d -> %d bytes)".formatted(destFile, data.length, destFile.length());
+	}
+
+	private String decompress(File file) throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+		byte[] decompressed;
+		if (compressionMethod != CompressionMethodEnum.NONE) {
+			decompressed = compressionMethod.getCodec().decompress(data);
+		} else {
+			decompressed = detectAndDecompress(data);
+			if (decompressed == null) {
+				return null;
+			}
+		}
+
+		File destFile = getOutputFile(file, outputDir == null ? getDecompressedName(file) : file.getName());
+		write(destFile, decompressed);
+		return "%s (%d -> %d bytes)".formatted(destFile, data.capacity(), decompressed.length);
+	}
+
+	private static String getExtension(CompressionMethodEnum method) {
+		return "." + method.name().toLowerCase();
+	}
+
+	/**
+	 * @return the name of the file without the extension of a compression method,
+	 *         else with .dec
+	 */
+	private static String getDecompressedName(File file) {
+		String name = file.getName();
+		for (CompressionMethodEnum method : CompressionMethodEnum.values()) {
+			String extension = getExtension(method);
+			if (method != CompressionMethodEnum.NONE && name.length() > extension.length()
+					&& name.toLowerCase().endsWith(extension)) {
+				return name.substring(0, name.length() - extension.length());
+			}
+		}
+
+		return name + ".dec";
+	}
+
+	/**
+	 * LZ data is checked completely, BLZ only has a footer to look at so it comes
+	 * last.
+	 *
+	 * @return the decompressed data, null if the data does not look compressed
+	 */
+	private static byte[] detectAndDecompress(ByteBuffer data) throws IOException {
+		byte[] decompressed = LZCodec.LZ10.tryDecompress(data);
+		if (decompressed != null) {
+			return decompressed;
+		}
+
+		Codec blz = BLZCodec.BLZ;
+		if (blz.isCompressed(data)) {
+			return blz.decompress(data);
+		}
+
+		return null;
+	}
+
+	private static void write(File file, byte[] data) throws IOException {
+		Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+		Files.write(file.toPath(), data);
+	}
+
+}
@@ -0,0 +1,109 @@
+package pokemon.cli;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import pokemon.files.graphics.GraphicResources.ColorBitDepth;
+import pokemon.logic.Palette;
+import pokemon.logic.ScreenMap;
+import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
+import pokemon.panel.graphics.ScreenCompositor;
+
+/**
+ * Renders graphic files into images, without any window. Palettes and tiles
+ * are indexed images so the color indexes are kept in the PNG.
+ */
+public class GraphicExporter {
+
+	// Used when the number of tiles in a row is not known
+	private static final int DEFAULT_TILES_PER_ROW = 16;
+	// Size of a color in the palette image
+	private static final int COLOR_SIZE = 8;
+
+	private GraphicExporter() {
+	}
+
+	/**
+	 * @param colorBitDepth the depth of the tiles
+	 * @return a palette going from black to white, for tiles without palette
+	 */
+	public static Palette createGrayPalette(ColorBitDepth colorBitDepth) {
+		int[] colors = new int[Palette.MAX_COLOR_NUMBER];
+		for (int i = 0; i < colors.length; i++) {
+			// Each 4 bits palette is a full gradient
+			int gray = colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH ? (i & 0xF) * 0x11 : i;
+			colors[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+		}
+
+		return new Palette(colorBitDepth.getBitDepthValue(), colors);
+	}
+
+	/**
+	 * One line per palette, one square per color
+	 *
+	 * @param palette the palette to render
+	 * @return an indexed image of the colors
+	 */
+	public static BufferedImage renderPalette(Palette palette) {
+		int rowNumber = palette.getBitDepth() == ColorBitDepth.EIGHT_BIT_DEPTH.getBitDepthValue()
+				? Palette.MAX_PALETTE_NUMBER
+				: Math.max(1, palette.getPaletteNumber());
+		BufferedImage image = new BufferedImage(Palette.PALETTE_SIZE * COLOR_SIZE, rowNumber * COLOR_SIZE,
+				BufferedImage.TYPE_BYTE_INDEXED, palette.createIndexColorModel(0));
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+		int width = image.getWidth();
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[y * width + x] = (byte) ((y / COLOR_SIZE) * Palette.PALETTE_SIZE + x / COLOR_SIZE);
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * Tiles are put one after the other, in rows of tilesPerRow tiles
+	 *
+	 * @param tiles         the tiles to render
+	 * @param tilesPerRow   the number of tiles in a row, as in the file
+	 * @param palette       the colors
+	 * @param paletteNumber the palette used by 4 bits tiles
+	 * @return an indexed image of the tiles
+	 */
+	public static BufferedImage renderTiles(TileSheet tiles, int tilesPerRow, Palette palette, int paletteNumber) {
+		int tileNumber = Math.max(1, tiles.getTileNumber());
+		// Files with unknown dimensions say 0xFFFF
+		if (tilesPerRow <= 0 || tilesPerRow > tileNumber) {
+			tilesPerRow = Math.min(DEFAULT_TILES_PER_ROW, tileNumber);
+		}
+		int rowNumber = (tileNumber + tilesPerRow - 1) / tilesPerRow;
+
+		BufferedImage image = new BufferedImage(tilesPerRow * Tile.TILE_SIZE, rowNumber * Tile.TILE_SIZE,
+				BufferedImage.TYPE_BYTE_INDEXED, palette.createIndexColorModel(paletteNumber));
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+		int width = image.getWidth();
+		for (int tileIndex = 0; tileIndex < tiles.getTileNumber(); tileIndex++) {
+			int tileOffset = (tileIndex / tilesPerRow) * Tile.TILE_SIZE * width
+					+ (tileIndex % tilesPerRow) * Tile.TILE_SIZE;
+			for (int y = 0; y < Tile.TILE_SIZE; y++) {
+				tiles.copyLine(tileIndex, y, pixels, tileOffset + y * width);
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * @param screenMap the screen to render
+	 * @param palette   the colors
+	 * @param tiles     the tiles used by the screen
+	 * @return the screen, in RGB
+	 */
+	public static BufferedImage renderScreen(ScreenMap screenMap, Palette palette, TileSheet tiles) {
+		return new ScreenCompositor(screenMap, palette, tiles).getImage();
+	}
+
+}
@@ -0,0 +1,16 @@
+package pokemon.event;
+
+/**
+ * An event that only matters for its last value. When it is posted with
+ * {@link EventManager#postEvent(Event)}, a pending event of the same class with
+ * an equal key is replaced instead of being delivered twice.
+ */
+public interface CoalescingEvent extends Event {
+
+	/**
+	 * @return what identifies the changed thing, must implement equals and
+	 *         hashCode
+	 */
+	Object getCoalescingKey();
+
+}
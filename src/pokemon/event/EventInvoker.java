@@ -0,0 +1,20 @@
+package pokemon.event;
+
+/**
+ * Calls a listener method on a listener, implemented by lambdas generated in
+ * {@link RegisteredListener}. Public because the generated classes live in the
+ * listener packages.
+ */
+@FunctionalInterface
+public interface EventInvoker {
+
+	/**
+	 * Calls the method on the listener
+	 *
+	 * @param listener the object to call the method on
+	 * @param event    the event, must be of the method parameter type
+	 * @throws Throwable anything the listener method throws
+	 */
+	void invoke(Object listener, Event event) throws Throwable;
+
+}
@@ -9,5 +9,10 @@ import java.lang.annotation.Target;
 @Retention(RUNTIME)
 @Target(METHOD)
 public @interface EventListener {
-	
+
+	/**
+	 * @return the thread the listener is called on
+	 */
+	ListenerThread thread() default ListenerThread.CALLER;
+
 }
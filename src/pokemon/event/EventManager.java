@@ -1,31 +1,68 @@
 package pokemon.event;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import javax.swing.SwingUtilities;
 
 public class EventManager {
 
 	private static final EventManager instance = new EventManager();
 
-	private Map<Class<? extends Event>, List<RegisteredListener>> listenersMap;
+	private static final RegisteredListener[] NO_LISTENERS = new RegisteredListener[0];
+
+	// Arrays are never modified, a new one replaces them when a listener is added.
+	// Events are thrown far more often than listeners are registered
+	private Map<Class<? extends Event>, RegisteredListener[]> listenersMap;
+	// Listeners are weakly referenced, collected ones end up here and are removed
+	private ReferenceQueue<Object> collectedListeners;
+
+	// Posted events waiting for the EDT. Coalescing events are stored in the map
+	// and only their key is queued, a newer event just replaces the map value
+	private Queue<Object> postedEvents;
+	private Map<CoalescingKey, Event> pendingEvents;
+	private AtomicBoolean isDrainScheduled;
+
+	private ExecutorService backgroundExecutor;
 
 	private EventManager() {
-		listenersMap = new HashMap<Class<? extends Event>, List<RegisteredListener>>();
+		listenersMap = new ConcurrentHashMap<Class<? extends Event>, RegisteredListener[]>();
+		collectedListeners = new ReferenceQueue<Object>();
+		postedEvents = new ConcurrentLinkedQueue<Object>();
+		pendingEvents = new ConcurrentHashMap<CoalescingKey, Event>();
+		isDrainScheduled = new AtomicBoolean(false);
+		backgroundExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Event background");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	/**
 	 * Registers a listener (an object) as a event listener. This will scan all
 	 * functions and select the ones with the EventListener annotation, having only
-	 * one parameter (implementing the Event interface)
+	 * one parameter (implementing the Event interface). Methods are compiled into
+	 * direct calls here, so throwing an event does not use reflection.
+	 * 
+	 * The listener is only weakly referenced, it stops listening when it is
+	 * garbage collected or when {@link #unregisterListener(Object)} is called.
 	 * 
 	 * @param classListener the object to register
 	 */
 	@SuppressWarnings("unchecked")
 	public void registerListener(Object classListener) {
+		purgeCollectedListeners();
+
 		// Extract all methods of the class listener
 		Method[] classMethods = classListener.getClass().getDeclaredMethods();
 
@@ -39,10 +76,9 @@ public class EventManager {
 					// Check if one is the Event interface
 					for (Class<?> interfaze : interfaces) {
 						if (Event.class.isAssignableFrom(interfaze)) {
-							listenersMap
-									.computeIfAbsent((Class<? extends Event>) parameters[0].getType(),
-											key -> new ArrayList<RegisteredListener>())
-									.add(new RegisteredListener(classListener, method));
+							RegisteredListener listener = new RegisteredListener(classListener, method, collectedListeners);
+							listenersMap.merge((Class<? extends Event>) parameters[0].getType(),
+									new RegisteredListener[] { listener }, EventManager::append);
 							break;
 						}
 					}
@@ -52,23 +88,113 @@ public class EventManager {
 	}
 
 	/**
-	 * Throws an event
+	 * Stops sending events to a listener
+	 * 
+	 * @param classListener the object to unregister
+	 */
+	public void unregisterListener(Object classListener) {
+		removeListeners(listener -> listener.isListening(classListener));
+	}
+
+	private void purgeCollectedListeners() {
+		// Only rebuild the arrays if something was collected
+		if (collectedListeners.poll() == null) {
+			return;
+		}
+		while (collectedListeners.poll() != null) {
+			// One pass removes all of them
+		}
+
+		removeListeners(RegisteredListener::isCleared);
+	}
+
+	private void removeListeners(Predicate<RegisteredListener> filter) {
+		for (Class<? extends Event> eventClass : listenersMap.keySet()) {
+			listenersMap.computeIfPresent(eventClass, (_, listeners) -> {
+				RegisteredListener[] kept = Arrays.stream(listeners).filter(filter.negate())
+						.toArray(RegisteredListener[]::new);
+				return kept.length == 0 ? null : kept;
+			});
+		}
+	}
+
+	/**
+	 * Throws an event, listeners are called now unless they asked for another
+	 * thread (see {@link ListenerThread})
 	 * 
 	 * @param event the event to throw
 	 */
 	public void throwEvent(Event event) {
-		List<RegisteredListener> listeners = listenersMap.get(event.getClass());
-		if (listeners == null) {
-			return;
+		purgeCollectedListeners();
+
+		for (RegisteredListener listener : listenersMap.getOrDefault(event.getClass(), NO_LISTENERS)) {
+			switch (listener.getThread()) {
+			case EDT:
+				if (SwingUtilities.isEventDispatchThread()) {
+					listener.fireChange(event);
+				} else {
+					SwingUtilities.invokeLater(() -> listener.fireChange(event));
+				}
+				break;
+
+			case BACKGROUND:
+				backgroundExecutor.execute(() -> listener.fireChange(event));
+				break;
+
+			default:
+				listener.fireChange(event);
+				break;
+			}
 		}
+	}
 
-		for (RegisteredListener listener : listeners) {
-			listener.fireChange(event);
+	/**
+	 * Posts an event, it is thrown later on the EDT and this returns immediately.
+	 * Can be called from any thread. If the event is a {@link CoalescingEvent},
+	 * it replaces the same event not thrown yet.
+	 * 
+	 * @param event the event to post
+	 */
+	public void postEvent(Event event) {
+		if (event instanceof CoalescingEvent coalescingEvent) {
+			CoalescingKey key = new CoalescingKey(event.getClass(), coalescingEvent.getCoalescingKey());
+			// Only queued once, the drain takes the last value
+			if (pendingEvents.put(key, event) == null) {
+				postedEvents.add(key);
+			}
+		} else {
+			postedEvents.add(event);
 		}
+
+		if (isDrainScheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::drainPostedEvents);
+		}
+	}
+
+	private void drainPostedEvents() {
+		// Events posted while draining are in the next drain, if any
+		isDrainScheduled.set(false);
+
+		Object posted;
+		while ((posted = postedEvents.poll()) != null) {
+			Event event = posted instanceof CoalescingKey key ? pendingEvents.remove(key) : (Event) posted;
+			if (event != null) {
+				throwEvent(event);
+			}
+		}
+	}
+
+	private static RegisteredListener[] append(RegisteredListener[] listeners, RegisteredListener[] newListeners) {
+		RegisteredListener[] result = Arrays.copyOf(listeners, listeners.length + newListeners.length);
+		System.arraycopy(newListeners, 0, result, listeners.length, newListeners.length);
+		return result;
 	}
 
 	public static EventManager getInstance() {
 		return instance;
 	}
 
+	private record CoalescingKey(Class<? extends Event> eventClass, Object key) {
+	}
+
 }
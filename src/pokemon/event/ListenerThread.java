@@ -0,0 +1,20 @@
+package pokemon.event;
+
+/**
+ * Thread on which a listener method is called, see {@link EventListener}
+ */
+public enum ListenerThread {
+	/**
+	 * The thread throwing the event, or the EDT for posted events
+	 */
+	CALLER,
+	/**
+	 * The Swing event dispatch thread, for listeners touching the UI
+	 */
+	EDT,
+	/**
+	 * A background thread, for long work like extracting archives. Background
+	 * listeners are called one at a time, in the order of the events
+	 */
+	BACKGROUND;
+}
@@ -1,32 +1,102 @@
 package pokemon.event;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RegisteredListener {
-	
-	private Method method;
-	private Object listener;
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Event.class);
+
+	// Compiled once per method, not per registered object
+	private static final Map<Method, EventInvoker> invokers = new ConcurrentHashMap<Method, EventInvoker>();
+
+	// Weak so closed panels can be garbage collected, the listener is cleared then
+	private WeakReference<Object> listener;
+	private EventInvoker invoker;
+	private ListenerThread thread;
 
 	/**
 	 * Registers the listener to call it after.
-	 * 
+	 *
 	 * @param listener the listener to register
+	 * @param method   the method to call
+	 * @param queue    where the listener reference goes when it is collected
+	 */
+	public RegisteredListener(final Object listener, final Method method, ReferenceQueue<Object> queue) {
+		this.listener = new WeakReference<Object>(listener, queue);
+		this.invoker = invokers.computeIfAbsent(method, RegisteredListener::createInvoker);
+		EventListener annotation = method.getAnnotation(EventListener.class);
+		this.thread = annotation != null ? annotation.thread() : ListenerThread.CALLER;
+	}
+
+	/**
+	 * Compiles the method with the {@link LambdaMetafactory}, as if we had written
+	 * {@code (listener, event) -> ((Panel) listener).onEvent((SomeEvent) event)}.
+	 * If the lambda cannot be created, a method handle is used instead, still
+	 * faster than {@link Method#invoke}.
+	 */
+	private static EventInvoker createInvoker(Method method) {
+		MethodHandles.Lookup lookup;
+		MethodHandle handle;
+		try {
+			// Lookup with the rights of the listener class, so non public methods work too
+			lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+			handle = lookup.unreflect(method);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot access listener method " + method, e);
+		}
+
+		try {
+			CallSite callSite = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(EventInvoker.class),
+					INVOKER_TYPE, handle, handle.type());
+			return (EventInvoker) callSite.getTarget().invokeExact();
+		} catch (Throwable e) {
+			MethodHandle genericHandle = handle.asType(INVOKER_TYPE);
+			return (listener, event) -> genericHandle.invokeExact(listener, event);
+		}
+	}
+
+	/**
+	 * @return the listener, null if it has been garbage collected
 	 */
-	public RegisteredListener(final Object listener, final Method method) {
-		this.listener = listener;
-		this.method = method;
+	public Object getListener() {
+		return listener.get();
+	}
+
+	public boolean isListening(Object classListener) {
+		return listener.get() == classListener;
+	}
+
+	public boolean isCleared() {
+		return listener.refersTo(null);
+	}
+
+	public ListenerThread getThread() {
+		return thread;
 	}
 
 	/**
-	 * Update the listener listening for this event.
-	 * 
+	 * Update the listener listening for this event, on the current thread.
+	 *
 	 * @param event the listened event
 	 */
 	public void fireChange(Event event) {
+		Object classListener = listener.get();
+		if (classListener == null) {
+			return;
+		}
+
 		try {
-			method.invoke(listener, event);
-		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			invoker.invoke(classListener, event);
+		} catch (Throwable e) {
 			e.printStackTrace();
 		}
 	}
@@ -1,23 +1,31 @@
 package pokemon.event.palette;
 
 import java.awt.Color;
+import java.util.List;
 
-import pokemon.event.Event;
+import pokemon.event.CoalescingEvent;
 
-public class PaletteColorModifiedEvent implements Event {
+public class PaletteColorModifiedEvent implements CoalescingEvent {
 
+	private String paletteName;
 	private int paletteNumber;
 	private int index;
 	private Color oldColor;
 	private Color newColor;
 	
-	public PaletteColorModifiedEvent(int paletteNumber, int index, Color oldColor, Color newColor) {
+	public PaletteColorModifiedEvent(String paletteName, int paletteNumber, int index, Color oldColor,
+			Color newColor) {
+		this.paletteName = paletteName;
 		this.paletteNumber = paletteNumber;
 		this.index = index;
 		this.oldColor = oldColor;
 		this.newColor = newColor;
 	}
 	
+	public String getPaletteName() {
+		return paletteName;
+	}
+	
 	public int getPaletteNumber() {
 		return paletteNumber;
 	}
@@ -33,5 +41,11 @@ public class PaletteColorModifiedEvent implements Event {
 	public Color getNewColor() {
 		return newColor;
 	}
+
+	@Override
+	public Object getCoalescingKey() {
+		// Only the last color of the same index matters
+		return List.of(paletteName, (paletteNumber << 4) | index);
+	}
 	
 }
@@ -4,14 +4,20 @@ import pokemon.event.Event;
 
 public class TileEditSelectedEvent implements Event {
 	
+	private String tileName;
 	private int tileIndex;
 	private int[][] tileData;
 	
-	public TileEditSelectedEvent(int tileIndex, int[][] tileData) {
+	public TileEditSelectedEvent(String tileName, int tileIndex, int[][] tileData) {
+		this.tileName = tileName;
 		this.tileIndex = tileIndex;
 		this.tileData = tileData;
 	}
 	
+	public String getTileName() {
+		return tileName;
+	}
+	
 	public int getTileIndex() {
 		return tileIndex;
 	}
@@ -4,13 +4,16 @@ import pokemon.event.Event;
 
 public class TilePixelModifiedEvent implements Event {
 
+	private String tileName;
 	private int tileIndex;
 	private int xPixelIndex;
 	private int yPixelIndex;
 	private int oldColorIndex;
 	private int newColorIndex;
 
-	public TilePixelModifiedEvent(int tileIndex, int xPixelIndex, int yPixelIndex, int oldColorIndex, int newColorIndex) {
+	public TilePixelModifiedEvent(String tileName, int tileIndex, int xPixelIndex, int yPixelIndex, int oldColorIndex,
+			int newColorIndex) {
+		this.tileName = tileName;
 		this.tileIndex = tileIndex;
 		this.xPixelIndex = xPixelIndex;
 		this.yPixelIndex = yPixelIndex;
@@ -18,6 +21,13 @@ public class TilePixelModifiedEvent implements Event {
 		this.newColorIndex = newColorIndex;
 	}
 	
+	/**
+	 * @return the name of the modified tiles, only their panels apply the change
+	 */
+	public String getTileName() {
+		return tileName;
+	}
+	
 	public int getTileIndex() {
 		return tileIndex;
 	}
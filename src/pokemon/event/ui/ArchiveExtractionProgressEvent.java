@@ -0,0 +1,36 @@
+package pokemon.event.ui;
+
+import java.nio.file.Path;
+
+import pokemon.event.CoalescingEvent;
+
+public class ArchiveExtractionProgressEvent implements CoalescingEvent {
+
+	private Path archivePath;
+	private int extractedFiles;
+	private int fileNumber;
+
+	public ArchiveExtractionProgressEvent(Path archivePath, int extractedFiles, int fileNumber) {
+		this.archivePath = archivePath;
+		this.extractedFiles = extractedFiles;
+		this.fileNumber = fileNumber;
+	}
+
+	public Path getArchivePath() {
+		return archivePath;
+	}
+
+	public int getExtractedFiles() {
+		return extractedFiles;
+	}
+
+	public int getFileNumber() {
+		return fileNumber;
+	}
+
+	@Override
+	public Object getCoalescingKey() {
+		return archivePath;
+	}
+
+}
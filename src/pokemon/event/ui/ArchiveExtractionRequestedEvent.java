@@ -0,0 +1,29 @@
+package pokemon.event.ui;
+
+import java.io.File;
+
+import pokemon.event.Event;
+
+public class ArchiveExtractionRequestedEvent implements Event {
+
+	private File archiveFile;
+	private File destDir;
+
+	/**
+	 * @param archiveFile the archive to extract
+	 * @param destDir     the directory to delete before extracting, null if none
+	 */
+	public ArchiveExtractionRequestedEvent(File archiveFile, File destDir) {
+		this.archiveFile = archiveFile;
+		this.destDir = destDir;
+	}
+
+	public File getArchiveFile() {
+		return archiveFile;
+	}
+
+	public File getDestDir() {
+		return destDir;
+	}
+
+}
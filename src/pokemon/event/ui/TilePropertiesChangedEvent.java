@@ -1,8 +1,10 @@
 package pokemon.event.ui;
 
-import pokemon.event.Event;
+import java.util.List;
 
-public class TilePropertiesChangedEvent implements Event {
+import pokemon.event.CoalescingEvent;
+
+public class TilePropertiesChangedEvent implements CoalescingEvent {
 	
 	public enum ChangedProperty {
 		ZOOM, SELECTED_PALETTE, TILE_X, TILE_Y, TRANSPARENT_BG, SHOW_TILE_GRID, SHOW_PIXEL_GRID;
@@ -29,4 +31,9 @@ public class TilePropertiesChangedEvent implements Event {
 	public int getValue() {
 		return value;
 	}
+
+	@Override
+	public Object getCoalescingKey() {
+		return List.of(tileName, property);
+	}
 }
@@ -1,5 +1,6 @@
 package pokemon.event.ui;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 
 import pokemon.event.Event;
@@ -8,10 +9,21 @@ public class TreeFileOpened implements Event {
 	
 	private Path path;
 	private String fileName;
+	private ByteBuffer content;
 	
 	public TreeFileOpened(Path path, String fileName) {
+		this(path, fileName, null);
+	}
+	
+	/**
+	 * @param path     the path of the file, virtual if it is in a ROM
+	 * @param fileName the name of the file
+	 * @param content  the content of a file of a ROM, null for files on the disk
+	 */
+	public TreeFileOpened(Path path, String fileName, ByteBuffer content) {
 		this.path = path;
 		this.fileName = fileName;
+		this.content = content;
 	}
 	
 	public Path getPath() {
@@ -22,4 +34,11 @@ public class TreeFileOpened implements Event {
 		return fileName;
 	}
 	
+	/**
+	 * @return the content of the file if it is not on the disk, else null
+	 */
+	public ByteBuffer getContent() {
+		return content;
+	}
+	
 }
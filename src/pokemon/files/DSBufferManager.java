@@ -0,0 +1,207 @@
+package pokemon.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import pokemon.files.types.TypeEnum;
+import pokemon.files.types.TypedArray;
+import pokemon.files.types.TypedNumber;
+
+/**
+ * Class that contains static methods to read and write C-equivalent data types
+ * in a little endian {@link ByteBuffer}. Sections are read in one go from the
+ * stream and then decoded from the buffer, instead of issuing one read per
+ * value like {@link DSFileManager} does.
+ */
+public class DSBufferManager {
+
+	private DSBufferManager() {
+
+	}
+
+	/**
+	 * Wraps an array in a little endian buffer.
+	 *
+	 * @param data the array to wrap
+	 * @return the little endian buffer
+	 */
+	public static ByteBuffer wrap(byte[] data) {
+		return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Allocates a little endian heap buffer. Use it to prepare a whole section
+	 * before writing it with {@link #writeBuffer(OutputStream, ByteBuffer)}.
+	 *
+	 * @param size the size of the buffer in bytes
+	 * @return the little endian buffer
+	 */
+	public static ByteBuffer allocate(int size) {
+		return wrap(new byte[size]);
+	}
+
+	/**
+	 * Reads a buffer as a stream, from its position to its limit. Nothing is
+	 * copied and the position of the buffer is not modified.
+	 *
+	 * @param buffer the buffer to read
+	 * @return the stream
+	 */
+	public static InputStream newInputStream(ByteBuffer buffer) {
+		ByteBuffer data = buffer.duplicate();
+		return new InputStream() {
+
+			@Override
+			public int read() {
+				return data.hasRemaining() ? data.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) {
+				if (length == 0) {
+					return 0;
+				} else if (!data.hasRemaining()) {
+					return -1;
+				}
+
+				int readLength = Math.min(length, data.remaining());
+				data.get(bytes, offset, readLength);
+				return readLength;
+			}
+
+			@Override
+			public int available() {
+				return data.remaining();
+			}
+		};
+	}
+
+	/**
+	 * Reads exactly size bytes from the stream in one call and wraps them in a
+	 * little endian buffer.
+	 *
+	 * @param size the number of bytes to read
+	 * @return the read buffer
+	 * @throws IOException if the stream ends before size bytes are read
+	 */
+	public static ByteBuffer readBuffer(InputStream inStream, int size) throws IOException {
+		byte[] data = inStream.readNBytes(size);
+		if (data.length != size) {
+			throw new IOException("Could not read %d bytes from the stream".formatted(size));
+		}
+
+		return wrap(data);
+	}
+
+	/**
+	 * Reads an unsigned value from the buffer that has the specified size. This
+	 * does not allocate anything.
+	 *
+	 * @param type the type to read from the buffer
+	 * @return the value read
+	 */
+	public static long read(ByteBuffer buffer, TypeEnum type) {
+		return switch (type.getByteSize()) {
+		case 1 -> buffer.get() & 0xFFL;
+		case 2 -> buffer.getShort() & 0xFFFFL;
+		case 4 -> buffer.getInt() & 0xFFFFFFFFL;
+		default -> buffer.getLong();
+		};
+	}
+
+	/**
+	 * Reads a value from the buffer that corresponds to the specified number, and
+	 * put it into that number.
+	 *
+	 * @param number the number wrapper
+	 * @see #read(ByteBuffer, TypeEnum)
+	 */
+	public static void read(ByteBuffer buffer, TypedNumber number) {
+		number.setValue(read(buffer, number.getType()));
+	}
+
+	/**
+	 * Reads n times the same type from the buffer. The values are copied as they
+	 * are packed in the buffer.
+	 *
+	 * @return results from the buffer
+	 */
+	public static TypedArray read(ByteBuffer buffer, TypeEnum type, int n) {
+		return new TypedArray(buffer, type, n);
+	}
+
+	/**
+	 * Reads an array from the buffer that corresponds to the specified type and
+	 * length, and put it into that array.
+	 *
+	 * @param array the array wrapper
+	 */
+	public static void read(ByteBuffer buffer, TypedArray array) {
+		array.setValues(buffer);
+	}
+
+	/**
+	 * Skips n bytes in the buffer (padding, constants...)
+	 *
+	 * @param n the number of bytes to skip
+	 */
+	public static void skip(ByteBuffer buffer, int n) {
+		buffer.position(buffer.position() + n);
+	}
+
+	public static byte[] readBytes(ByteBuffer buffer, int n) {
+		byte[] values = new byte[n];
+		buffer.get(values);
+		return values;
+	}
+
+	/**
+	 * Writes a value to the buffer and format it according to the specified type.
+	 *
+	 * @param value the value to write
+	 */
+	public static void write(ByteBuffer buffer, TypedNumber value) {
+		write(buffer, value.getValue(), value.getType());
+	}
+
+	/**
+	 * Writes a value to the buffer and format it according to the specified type.
+	 * This does not allocate anything.
+	 *
+	 * @param value the value to write
+	 * @param type  to format the value
+	 */
+	public static void write(ByteBuffer buffer, long value, TypeEnum type) {
+		switch (type.getByteSize()) {
+		case 1 -> buffer.put((byte) value);
+		case 2 -> buffer.putShort((short) value);
+		case 4 -> buffer.putInt((int) value);
+		default -> buffer.putLong(value);
+		}
+	}
+
+	/**
+	 * Writes multiple values of the same type to the buffer. The packed values are
+	 * copied as they are.
+	 *
+	 * @param value the values to write
+	 */
+	public static void write(ByteBuffer buffer, TypedArray value) {
+		buffer.put(value.getBuffer());
+	}
+
+	/**
+	 * Writes everything that has been put in a heap buffer (from 0 to its
+	 * position) to the stream with a single write.
+	 *
+	 * @param buffer the buffer to write
+	 * @throws IOException if anything happens with the write
+	 */
+	public static void writeBuffer(OutputStream outStream, ByteBuffer buffer) throws IOException {
+		outStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+	}
+
+}
@@ -3,6 +3,7 @@ package pokemon.files;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import pokemon.files.types.TypeEnum;
 import pokemon.files.types.TypedArray;
@@ -27,10 +28,9 @@ public class DSFileManager {
 	 */
 	public static TypedNumber read(InputStream inStream, TypeEnum type) throws IOException {
 		int byteSize = type.getByteSize();
-		byte[] buffer = new byte[byteSize];
-		int bytesRead = inStream.read(buffer);
+		byte[] buffer = inStream.readNBytes(byteSize);
 
-		if (bytesRead != byteSize) {
+		if (buffer.length != byteSize) {
 			throw new IOException("Could not read %d bytes from the stream".formatted(byteSize));
 		}
 
@@ -43,19 +43,15 @@ public class DSFileManager {
 	}
 
 	/**
-	 * Reads n times the same type from the stream.
+	 * Reads n times the same type from the stream. All values are read at once
+	 * and decoded from a buffer.
 	 * 
 	 * @return results from the stream
 	 * @throws IOException
-	 * @see #read(InputStream, TypeEnum)
+	 * @see DSBufferManager#read(ByteBuffer, TypeEnum, int)
 	 */
 	public static TypedArray read(InputStream inStream, TypeEnum type, int n) throws IOException {
-		TypedNumber[] results = new TypedNumber[n];
-		for (int i = 0; i < n; i++) {
-			results[i] = read(inStream, type);
-		}
-
-		return new TypedArray(results, type);
+		return DSBufferManager.read(DSBufferManager.readBuffer(inStream, n * type.getByteSize()), type, n);
 	}
 
 	/**
@@ -79,7 +75,7 @@ public class DSFileManager {
 	 * @see #read(InputStream, TypeEnum, int)
 	 */
 	public static void read(InputStream inStream, TypedArray array) throws IOException {
-		array.setValues(read(inStream, array.getType(), array.length()).getValues());
+		DSBufferManager.read(DSBufferManager.readBuffer(inStream, array.getSize()), array);
 	}
 
 	/**
@@ -137,15 +133,15 @@ public class DSFileManager {
 	}
 
 	/**
-	 * Writes multiple values of the same type to the stream
+	 * Writes multiple values of the same type to the stream in a single write
 	 * 
 	 * @param value the values to write
 	 * @throws IOException if anything happens with the write
 	 */
 	public static void write(OutputStream outStream, TypedArray value) throws IOException {
-		for (TypedNumber toWrite : value.getValues()) {
-			write(outStream, toWrite);
-		}
+		ByteBuffer buffer = DSBufferManager.allocate(value.getSize());
+		DSBufferManager.write(buffer, value);
+		DSBufferManager.writeBuffer(outStream, buffer);
 	}
 
 	/**
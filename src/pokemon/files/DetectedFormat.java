@@ -0,0 +1,42 @@
+package pokemon.files;
+
+import pokemon.files.archive.CompressionMethodEnum;
+
+/**
+ * Format of a file found from its content, and the compression wrapping it
+ * (if any).
+ */
+public class DetectedFormat {
+
+	public static final DetectedFormat UNKNOWN = new DetectedFormat(FormatEnum.UNKNOWN, CompressionMethodEnum.NONE);
+
+	private FormatEnum format;
+	private CompressionMethodEnum compressionMethod;
+
+	public DetectedFormat(FormatEnum format, CompressionMethodEnum compressionMethod) {
+		this.format = format;
+		this.compressionMethod = compressionMethod;
+	}
+
+	public FormatEnum getFormat() {
+		return format;
+	}
+
+	public CompressionMethodEnum getCompressionMethod() {
+		return compressionMethod;
+	}
+
+	public boolean isCompressed() {
+		return compressionMethod != CompressionMethodEnum.NONE;
+	}
+
+	public boolean isKnown() {
+		return format != FormatEnum.UNKNOWN;
+	}
+
+	@Override
+	public String toString() {
+		return isCompressed() ? "%s (%s)".formatted(format, compressionMethod) : format.toString();
+	}
+
+}
@@ -1,5 +1,12 @@
 package pokemon.files;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 import pokemon.files.headers.GenericHeader;
 
 public abstract class FileFormat extends Section {
@@ -26,4 +33,22 @@ public abstract class FileFormat extends Section {
 
 	protected abstract void updateSize();
 
+	/**
+	 * Writes the whole file, prepared in memory then given to the file channel in
+	 * a single write. The file is replaced.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if anything happens with the write
+	 */
+	public void store(Path path) throws IOException {
+		updateSize();
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream(getSize());
+		store(outStream);
+
+		try (FileChannel outChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			outStream.writeTo(Channels.newOutputStream(outChannel));
+		}
+	}
+
 }
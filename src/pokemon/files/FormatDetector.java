@@ -0,0 +1,267 @@
+package pokemon.files;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pokemon.files.archive.CompressionMethodEnum;
+import pokemon.files.archive.LZCodec;
+
+/**
+ * <p>
+ * Finds the format of files from their content instead of their extension.
+ * Only a small window at the start of the file is read: the magic number and
+ * the byte order mark tell the format, and LZ compressed files are
+ * decompressed just enough to read the magic number of the compressed file.
+ * </p>
+ *
+ * <p>
+ * Results are cached in a persistent index per directory, keyed by the file
+ * name, size and last modification time. Indexes are stored in the user
+ * directory so they never end up in an archive built from the directory.
+ * Files are read outside of any lock, only the index of their directory is
+ * locked to be looked up and updated.
+ * </p>
+ */
+public class FormatDetector {
+
+	public static final int HEADER_WINDOW_SIZE = 0x40;
+
+	private static final FormatDetector instance = new FormatDetector();
+	private static final Path INDEX_DIR = Path.of(System.getProperty("user.home"), ".nds_rom_editor", "formats");
+	private static final String INDEX_EXTENSION = ".idx";
+	// Graphic files use FEFFh and archives FFFEh...
+	private static final int BYTE_ORDER_MARK = 0xFEFF;
+	private static final int ARCHIVE_BYTE_ORDER_MARK = 0xFFFE;
+	private static final int MAGIC_SIZE = 4;
+	// Magic and byte order mark
+	private static final int MIN_HEADER_SIZE = 6;
+
+	private Map<Path, DirectoryIndex> indexes;
+
+	private FormatDetector() {
+		this.indexes = new ConcurrentHashMap<Path, DirectoryIndex>();
+
+		// Indexes are written when the application stops
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+	}
+
+	public static FormatDetector getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Detects the format of a file, the file is only read if it changed since
+	 * the last time it was detected.
+	 *
+	 * @param file the file to detect
+	 * @return the format of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public DetectedFormat detect(File file) throws IOException {
+		File absoluteFile = file.getAbsoluteFile();
+		long size = absoluteFile.length();
+		long lastModified = absoluteFile.lastModified();
+
+		DirectoryIndex index = indexes.computeIfAbsent(absoluteFile.getParentFile().toPath(), DirectoryIndex::new);
+		IndexEntry entry = index.get(absoluteFile.getName());
+		if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+			return entry.format;
+		}
+
+		// Two threads may read the same file, both find the same format
+		DetectedFormat format = detect(readHeader(absoluteFile));
+		index.put(absoluteFile.getName(), new IndexEntry(size, lastModified, format));
+
+		return format;
+	}
+
+	/**
+	 * Detects the format of data from its header.
+	 *
+	 * @param header the start of the data, at least {@link #HEADER_WINDOW_SIZE}
+	 *               bytes if possible
+	 * @return the format of the data
+	 */
+	public static DetectedFormat detect(ByteBuffer header) {
+		FormatEnum format = detectFormat(header);
+		if (format != FormatEnum.UNKNOWN) {
+			return new DetectedFormat(format, CompressionMethodEnum.NONE);
+		}
+
+		// Maybe compressed, then look at the beginning of the decompressed data
+		if (LZCodec.LZ10.isCompressed(header)) {
+			try {
+				ByteBuffer decompressedHeader = DSBufferManager
+						.wrap(LZCodec.LZ10.decompress(header, MIN_HEADER_SIZE));
+				format = detectFormat(decompressedHeader);
+				if (format != FormatEnum.UNKNOWN) {
+					boolean isLZ11 = (header.get(header.position()) & 0xFF) == LZCodec.LZ11_TYPE;
+					return new DetectedFormat(format, isLZ11 ? CompressionMethodEnum.LZ11 : CompressionMethodEnum.LZ);
+				}
+			} catch (IOException e) {
+				// Not LZ after all
+			}
+		}
+
+		return DetectedFormat.UNKNOWN;
+	}
+
+	private static FormatEnum detectFormat(ByteBuffer header) {
+		if (header.remaining() < MIN_HEADER_SIZE) {
+			return FormatEnum.UNKNOWN;
+		}
+
+		int position = header.position();
+		int byteOrder = header.duplicate().order(ByteOrder.LITTLE_ENDIAN).getShort(position + MAGIC_SIZE) & 0xFFFF;
+		if (byteOrder != BYTE_ORDER_MARK && byteOrder != ARCHIVE_BYTE_ORDER_MARK) {
+			return FormatEnum.UNKNOWN;
+		}
+
+		byte[] magic = new byte[MAGIC_SIZE];
+		header.get(position, magic);
+		return FormatEnum.getFromExtension(new String(magic, StandardCharsets.ISO_8859_1).toLowerCase());
+	}
+
+	private static ByteBuffer readHeader(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = DSBufferManager.allocate((int) Math.min(channel.size(), HEADER_WINDOW_SIZE));
+			int bytesRead;
+			do {
+				bytesRead = channel.read(header, header.position());
+			} while (bytesRead > 0 && header.hasRemaining());
+
+			return header.flip();
+		}
+	}
+
+	/**
+	 * Writes the modified indexes to the disk. Called when the application stops,
+	 * call it after detecting a lot of files to save the work.
+	 */
+	public void flush() {
+		for (DirectoryIndex index : indexes.values()) {
+			try {
+				index.save();
+			} catch (IOException e) {
+				// Only a cache, it will be computed again next time
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static class IndexEntry {
+
+		private long size;
+		private long lastModified;
+		private DetectedFormat format;
+
+		public IndexEntry(long size, long lastModified, DetectedFormat format) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.format = format;
+		}
+	}
+
+	/**
+	 * Index file of a directory, the first line is the directory path and then
+	 * one line per file: name, size, last modified, format and compression
+	 * separated by tabs. It is loaded the first time it is looked up, and is its
+	 * own lock.
+	 */
+	private static class DirectoryIndex {
+
+		private Path dir;
+		private Path indexFile;
+		private Map<String, IndexEntry> entries;
+		private boolean loaded;
+		private boolean dirty;
+
+		public DirectoryIndex(Path dir) {
+			this.dir = dir;
+			this.indexFile = INDEX_DIR.resolve("%08x%s".formatted(dir.toString().hashCode(), INDEX_EXTENSION));
+			this.entries = new HashMap<String, IndexEntry>();
+			this.loaded = false;
+			this.dirty = false;
+		}
+
+		public synchronized IndexEntry get(String fileName) {
+			if (!loaded) {
+				load();
+				loaded = true;
+			}
+
+			return entries.get(fileName);
+		}
+
+		public synchronized void put(String fileName, IndexEntry entry) {
+			entries.put(fileName, entry);
+			dirty = true;
+		}
+
+		private void load() {
+			if (!Files.exists(indexFile)) {
+				return;
+			}
+
+			try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+				// Another directory with the same hash, it will be overwritten
+				if (!dir.toString().equals(reader.readLine())) {
+					return;
+				}
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t");
+					if (fields.length != 5) {
+						continue;
+					}
+
+					try {
+						DetectedFormat format = new DetectedFormat(FormatEnum.valueOf(fields[3]),
+								CompressionMethodEnum.valueOf(fields[4]));
+						entries.put(fields[0],
+								new IndexEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), format));
+					} catch (IllegalArgumentException e) {
+						// Old or broken line, the file will be detected again
+					}
+				}
+			} catch (IOException e) {
+				entries.clear();
+			}
+		}
+
+		public synchronized void save() throws IOException {
+			if (!dirty) {
+				return;
+			}
+
+			Files.createDirectories(INDEX_DIR);
+			try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+				writer.write(dir.toString());
+				writer.newLine();
+
+				for (Map.Entry<String, IndexEntry> entry : entries.entrySet()) {
+					IndexEntry value = entry.getValue();
+					writer.write("%s\t%d\t%d\t%s\t%s".formatted(entry.getKey(), value.size, value.lastModified,
+							value.format.getFormat(), value.format.getCompressionMethod()));
+					writer.newLine();
+				}
+			}
+
+			dirty = false;
+		}
+	}
+
+}
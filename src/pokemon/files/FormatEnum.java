@@ -23,30 +23,38 @@ public enum FormatEnum {
 			.put("cran", ARCHIVE)
 			.build();
 
-	private Class<? extends FileFormat> formatClass;
+	// Archives are only written by their class, they are read with MappedNARC
+	private Class<?> formatClass;
 
-	private FormatEnum(Class<? extends FileFormat> formatClass) {
+	private FormatEnum(Class<?> formatClass) {
 		this.formatClass = formatClass;
 	}
 	
+	/**
+	 * @return the class loading files of this format (not for archives nor unknown
+	 *         files)
+	 */
 	public Class<? extends FileFormat> getFormatClass() {
-		return formatClass;
+		return formatClass.asSubclass(FileFormat.class);
 	}
 	
+	/**
+	 * @return the extension of files of this format ("bin" if unknown)
+	 */
+	public String getExtension() {
+		if (formatClass == null) {
+			return "bin";
+		}
+
+		return formatClass.getSimpleName().toLowerCase();
+	}
+
 	public static FormatEnum getFromExtension(String extension) {
 		return extensionMap.getOrDefault(extension, UNKNOWN);
 	}
 	
 	public static String getExtensionFromMagic(String magic) {
-		FormatEnum format = getFromExtension(magic.toLowerCase());
-		String extension = "bin";
-		
-		if (format != UNKNOWN) {
-			String className = format.getFormatClass().getName().toLowerCase();
-			extension = className.substring(className.lastIndexOf(".") + 1);
-		}
-		
-		return extension;
+		return getFromExtension(magic.toLowerCase()).getExtension();
 	}
 
 }
@@ -0,0 +1,200 @@
+package pokemon.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Keeps decoded resources (palettes, tiles...) of files within a memory
+ * budget. The least recently used ones are dropped first and decoded again the
+ * next time they are asked for.
+ * </p>
+ *
+ * <p>
+ * Resources are identified by the real path of their file and its modification
+ * time, so two files with the same name never collide and a file changed on
+ * disk is decoded again. Resources shown in a window are acquired, they are
+ * never dropped until released. Modified resources are never dropped, the
+ * changes would be lost, unless they are stored or their file changed.
+ * </p>
+ *
+ * @param <V> the type of the decoded resources
+ */
+public class ResourceCache<V> {
+
+	private LinkedHashMap<Key, Entry<V>> entries;
+	private ToLongFunction<V> weigher;
+	private long memoryBudget;
+	private long usedMemory;
+
+	/**
+	 * @param memoryBudget maximum size of the resources in bytes, only acquired
+	 *                     and modified resources can go over it
+	 * @param weigher      gives the size of a resource in bytes
+	 */
+	public ResourceCache(long memoryBudget, ToLongFunction<V> weigher) {
+		// Access order, the first entry is the least recently used
+		this.entries = new LinkedHashMap<Key, Entry<V>>(16, 0.75f, true);
+		this.weigher = weigher;
+		this.memoryBudget = memoryBudget;
+		this.usedMemory = 0;
+	}
+
+	/**
+	 * @param path a file
+	 * @return the key of the current version of the file
+	 * @throws IOException if the file does not exist anymore
+	 */
+	public static Key getKey(Path path) throws IOException {
+		Path realPath = path.toRealPath();
+		return new Key(realPath, Files.getLastModifiedTime(realPath).toMillis());
+	}
+
+	/**
+	 * @param key    the file of the resource
+	 * @param loader decodes the file if the resource is not in the cache
+	 * @return the resource
+	 * @throws IOException if the file cannot be decoded
+	 */
+	public synchronized V get(Key key, Loader<V> loader) throws IOException {
+		return getEntry(key, loader, false).value;
+	}
+
+	/**
+	 * Gets a resource and keeps it in the cache until it is released
+	 *
+	 * @param key    the file of the resource
+	 * @param loader decodes the file if the resource is not in the cache
+	 * @return the resource
+	 * @throws IOException if the file cannot be decoded
+	 */
+	public synchronized V acquire(Key key, Loader<V> loader) throws IOException {
+		return getEntry(key, loader, true).value;
+	}
+
+	/**
+	 * The resource can be dropped again, if nothing else acquired it
+	 */
+	public synchronized void release(Key key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.acquireNumber > 0) {
+			entry.acquireNumber--;
+			evict();
+		}
+	}
+
+	/**
+	 * The resource has changes which are not in its file, it is kept even once
+	 * released
+	 */
+	public synchronized void markModified(Key key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null) {
+			entry.isModified = true;
+		}
+	}
+
+	/**
+	 * The changes of the resource are stored in its file, or lost, it can be
+	 * dropped again
+	 */
+	public synchronized void unmarkModified(Key key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.isModified) {
+			entry.isModified = false;
+			evict();
+		}
+	}
+
+	/**
+	 * @return the size of the resources in the cache in bytes, acquired ones included
+	 */
+	public synchronized long getUsedMemory() {
+		return usedMemory;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void clear() {
+		entries.values().removeIf(Entry::canBeDropped);
+		usedMemory = entries.values().stream().mapToLong(entry -> entry.weight).sum();
+	}
+
+	private Entry<V> getEntry(Key key, Loader<V> loader, boolean acquire) throws IOException {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			// A new version of the file, the changes of the old ones cannot be stored
+			unmarkOtherVersions(key);
+			V value = loader.load(key.path());
+			entry = new Entry<V>(value, weigher.applyAsLong(value));
+			entries.put(key, entry);
+			usedMemory += entry.weight;
+		}
+
+		// Acquired before evicting, a resource over the budget is still kept
+		if (acquire) {
+			entry.acquireNumber++;
+		}
+		evict();
+		return entry;
+	}
+
+	private void unmarkOtherVersions(Key key) {
+		for (Map.Entry<Key, Entry<V>> entry : entries.entrySet()) {
+			if (entry.getKey().path().equals(key.path()) && !entry.getKey().equals(key)) {
+				entry.getValue().isModified = false;
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry<V>> iterator = entries.values().iterator();
+		while (usedMemory > memoryBudget && iterator.hasNext()) {
+			Entry<V> entry = iterator.next();
+			if (entry.canBeDropped()) {
+				iterator.remove();
+				usedMemory -= entry.weight;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface Loader<V> {
+
+		V load(Path path) throws IOException;
+
+	}
+
+	/**
+	 * A version of a file
+	 */
+	public record Key(Path path, long lastModified) {
+	}
+
+	private static class Entry<V> {
+
+		private V value;
+		private long weight;
+		private int acquireNumber;
+		private boolean isModified;
+
+		private Entry(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+			this.acquireNumber = 0;
+			this.isModified = false;
+		}
+
+		private boolean canBeDropped() {
+			return acquireNumber == 0 && !isModified;
+		}
+	}
+
+}
@@ -0,0 +1,317 @@
+package pokemon.files.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Backward LZ compression, used for the ARM9 binary and overlays. The data is
+ * compressed from its end, so the DS can decompress it in place: the compressed
+ * file is loaded at the start of its final area and decoded from the end, the
+ * output never catching up with the input.
+ * </p>
+ *
+ * <p>
+ * The file ends with a footer:
+ * <ul>
+ * <li>uint24: size of the compressed data including the footer
+ * <li>uint8: size of the footer (8 + padding)
+ * <li>uint32: decompressed size minus file size (0 if not compressed)
+ * </ul>
+ * Everything before the compressed data is not compressed. Compressed data is
+ * read backwards: flag byte (MSB first) then for each entry either a literal or
+ * 2 bytes LDDD (length 3 to 18, displacement 3 to 0x1002).
+ * </p>
+ */
+public class BLZCodec implements Codec {
+
+	public static final BLZCodec BLZ = new BLZCodec();
+
+	private static final int FOOTER_SIZE = 8;
+	private static final int MIN_MATCH = 3;
+	private static final int MAX_MATCH = 0x12;
+	private static final int MIN_DISPLACEMENT = 3;
+	private static final int MAX_DISPLACEMENT = 0x1002;
+	private static final int HASH_BITS = 15;
+	private static final int CHAIN_SIZE = 0x2000;
+	private static final int MAX_CHAIN = 128;
+
+	private BLZCodec() {
+	}
+
+	@Override
+	public boolean isCompressed(ByteBuffer data) {
+		int length = data.remaining();
+		if (length < FOOTER_SIZE) {
+			return false;
+		}
+
+		ByteBuffer footer = data.slice(data.position() + length - FOOTER_SIZE, FOOTER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int encodedLength = footer.getInt(0) & 0xFFFFFF;
+		int headerLength = footer.get(3) & 0xFF;
+		int additionalLength = footer.getInt(4);
+
+		return additionalLength > 0 && headerLength >= FOOTER_SIZE && headerLength <= FOOTER_SIZE + 3
+				&& encodedLength >= headerLength && encodedLength <= length;
+	}
+
+	@Override
+	public int getDecompressedSize(ByteBuffer data) throws IOException {
+		int length = data.remaining();
+		if (length < FOOTER_SIZE - 4) {
+			throw new IOException("Not BLZ compressed data");
+		}
+
+		int additionalLength = data.slice().order(ByteOrder.LITTLE_ENDIAN).getInt(length - 4);
+		if (additionalLength == 0) {
+			// Not compressed, only the last 4 bytes are added
+			return length - 4;
+		}
+
+		if (!isCompressed(data)) {
+			throw new IOException("Not BLZ compressed data");
+		}
+
+		return length + additionalLength;
+	}
+
+	@Override
+	public byte[] decompress(ByteBuffer data) throws IOException {
+		int length = data.remaining();
+		byte[] buffer = new byte[getDecompressedSize(data)];
+		if (buffer.length < length) {
+			// Not compressed, just remove the footer
+			data.get(data.position(), buffer);
+			return buffer;
+		}
+
+		// Only one buffer for both, decompression is done in place
+		data.get(data.position(), buffer, 0, length);
+		decompressInPlace(buffer, length);
+		return buffer;
+	}
+
+	@Override
+	public byte[] decompress(InputStream inStream) throws IOException {
+		// The footer is at the end so we need everything anyway
+		return decompress(ByteBuffer.wrap(inStream.readAllBytes()));
+	}
+
+	/**
+	 * Decompresses the data in the buffer, where the compressed file is at the
+	 * start of the buffer. The buffer must be big enough for the decompressed data
+	 * (see {@link #getDecompressedSize(ByteBuffer)}).
+	 *
+	 * @param buffer           the buffer with the compressed file, that will
+	 *                         contain the decompressed data
+	 * @param compressedLength the size of the compressed file
+	 * @return the decompressed size
+	 * @throws IOException if the data is not valid BLZ data or the buffer too small
+	 */
+	public static int decompressInPlace(byte[] buffer, int compressedLength) throws IOException {
+		ByteBuffer compressed = ByteBuffer.wrap(buffer, 0, compressedLength);
+		int decompressedLength = BLZ.getDecompressedSize(compressed);
+		if (decompressedLength > buffer.length) {
+			throw new IOException("Buffer too small for BLZ data (0x%X bytes needed)".formatted(decompressedLength));
+		}
+
+		// Nothing to do if not compressed
+		if (decompressedLength == compressedLength - 4) {
+			return decompressedLength;
+		}
+
+		ByteBuffer footer = ByteBuffer.wrap(buffer, compressedLength - FOOTER_SIZE, FOOTER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int encodedLength = footer.getInt() & 0xFFFFFF;
+		int headerLength = buffer[compressedLength - 5] & 0xFF;
+		int rawLength = compressedLength - encodedLength;
+
+		// Both go backwards, in from the end of the compressed data and out from the
+		// end of the decompressed data
+		int in = compressedLength - headerLength;
+		int out = decompressedLength;
+		int flags = 0;
+		int mask = 0;
+
+		try {
+			while (out > rawLength) {
+				mask >>>= 1;
+				if (mask == 0) {
+					flags = buffer[--in] & 0xFF;
+					mask = 0x80;
+				}
+
+				if ((flags & mask) == 0) {
+					buffer[--out] = buffer[--in];
+				} else {
+					int value = ((buffer[--in] & 0xFF) << 8) | (buffer[--in] & 0xFF);
+					int length = Math.min((value >> 12) + MIN_MATCH, out - rawLength);
+					int displacement = (value & 0xFFF) + MIN_DISPLACEMENT;
+					if (out + displacement > decompressedLength) {
+						throw new IOException("Invalid BLZ reference at 0x%X".formatted(out));
+					}
+
+					for (int end = out - length; out > end; out--) {
+						buffer[out - 1] = buffer[out - 1 + displacement];
+					}
+				}
+
+				// The output must never overwrite data that has not been read
+				if (out < in) {
+					throw new IOException("BLZ data cannot be decompressed in place");
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Truncated BLZ data", e);
+		}
+
+		return decompressedLength;
+	}
+
+	@Override
+	public byte[] compress(byte[] data) {
+		return compress(data, 0);
+	}
+
+	/**
+	 * Compresses the data, keeping at least the first bytes uncompressed (the
+	 * secure area of the ARM9 binary for instance). If compression does not help,
+	 * the data is returned with a footer saying that it is not compressed.
+	 *
+	 * @param data      the data to compress
+	 * @param rawLength the number of bytes at the start that must not be
+	 *                  compressed
+	 * @return the compressed data, with its footer
+	 */
+	public byte[] compress(byte[] data, int rawLength) {
+		int length = data.length;
+		int encodeEnd = length - Math.min(rawLength, length);
+
+		// Work on the reversed data, so matching is a normal forward LZ search
+		byte[] reversed = new byte[length];
+		for (int i = 0; i < length; i++) {
+			reversed[i] = data[length - 1 - i];
+		}
+
+		// Worst case is only literals: 1 flag byte every 8 bytes
+		byte[] encoded = new byte[encodeEnd + (encodeEnd >> 3) + 1];
+		int encodedPos = 0;
+
+		// Best place to stop compressing: fewest compressed + uncompressed bytes
+		int bestEncodedLength = 0;
+		int bestRawPos = 0;
+
+		int[] head = new int[1 << HASH_BITS];
+		int[] prev = new int[CHAIN_SIZE];
+		Arrays.fill(head, -1);
+
+		int pos = 0;
+		int flagPos = 0;
+		int mask = 0;
+		while (pos < encodeEnd) {
+			mask >>>= 1;
+			if (mask == 0) {
+				flagPos = encodedPos++;
+				encoded[flagPos] = 0;
+				mask = 0x80;
+			}
+
+			int bestLength = 0;
+			int bestDisplacement = 0;
+			if (pos + MIN_MATCH <= encodeEnd) {
+				int maxLength = Math.min(MAX_MATCH, encodeEnd - pos);
+				int candidate = head[hash(reversed, pos)];
+				int chain = MAX_CHAIN;
+
+				while (candidate >= 0 && pos - candidate <= MAX_DISPLACEMENT && chain-- > 0) {
+					int displacement = pos - candidate;
+					if (displacement >= MIN_DISPLACEMENT) {
+						// A match cannot overlap the bytes it copies
+						int candidateMaxLength = Math.min(maxLength, displacement - 1);
+						int matchLength = 0;
+						while (matchLength < candidateMaxLength
+								&& reversed[candidate + matchLength] == reversed[pos + matchLength]) {
+							matchLength++;
+						}
+
+						if (matchLength > bestLength) {
+							bestLength = matchLength;
+							bestDisplacement = displacement;
+							if (matchLength == maxLength) {
+								break;
+							}
+						}
+					}
+
+					int next = prev[candidate & (CHAIN_SIZE - 1)];
+					if (next >= candidate) {
+						break;
+					}
+					candidate = next;
+				}
+			}
+
+			if (bestLength >= MIN_MATCH) {
+				encoded[flagPos] |= (byte) mask;
+				int value = ((bestLength - MIN_MATCH) << 12) | (bestDisplacement - MIN_DISPLACEMENT);
+				encoded[encodedPos++] = (byte) (value >> 8);
+				encoded[encodedPos++] = (byte) value;
+				for (int i = 0; i < bestLength; i++) {
+					insert(reversed, pos++, encodeEnd, head, prev);
+				}
+			} else {
+				encoded[encodedPos++] = reversed[pos];
+				insert(reversed, pos++, encodeEnd, head, prev);
+			}
+
+			// This also guarantees that decompression in place never overwrites input
+			if (encodedPos - pos <= bestEncodedLength - bestRawPos) {
+				bestEncodedLength = encodedPos;
+				bestRawPos = pos;
+			}
+		}
+
+		int uncompressedLength = length - bestRawPos;
+		int paddedLength = (bestEncodedLength + 3) & ~3;
+		if (bestEncodedLength == 0 || uncompressedLength + paddedLength + FOOTER_SIZE >= length) {
+			// Not worth it (the footer needs a positive size increase), the footer is 4
+			// zero bytes
+			return Arrays.copyOf(data, length + 4);
+		}
+
+		int headerLength = FOOTER_SIZE + paddedLength - bestEncodedLength;
+		int resultLength = uncompressedLength + paddedLength + FOOTER_SIZE;
+		ByteBuffer result = ByteBuffer.allocate(resultLength).order(ByteOrder.LITTLE_ENDIAN);
+		result.put(data, 0, uncompressedLength);
+
+		// Encoded data is read backwards, so it is written reversed
+		for (int i = bestEncodedLength - 1; i >= 0; i--) {
+			result.put(encoded[i]);
+		}
+		for (int i = bestEncodedLength; i < paddedLength; i++) {
+			result.put((byte) 0xFF);
+		}
+
+		result.putInt((bestEncodedLength + headerLength) | (headerLength << 24));
+		result.putInt(length - resultLength);
+		return result.array();
+	}
+
+	private static int hash(byte[] data, int pos) {
+		int value = (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8) | ((data[pos + 2] & 0xFF) << 16);
+		return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	private static void insert(byte[] data, int pos, int end, int[] head, int[] prev) {
+		if (pos + MIN_MATCH <= end) {
+			int hash = hash(data, pos);
+			prev[pos & (CHAIN_SIZE - 1)] = head[hash];
+			head[hash] = pos;
+		}
+	}
+
+}
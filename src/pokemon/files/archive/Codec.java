@@ -0,0 +1,56 @@
+package pokemon.files.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compression algorithm of the DS. A codec never modifies the data it is given.
+ *
+ * @see CompressionMethodEnum#getCodec()
+ */
+public interface Codec {
+
+	/**
+	 * Checks the header of the data. This is not a proof that the data can be
+	 * decompressed.
+	 *
+	 * @param data the data to check, from its position to its limit
+	 * @return true if the data looks compressed with this codec
+	 */
+	boolean isCompressed(ByteBuffer data);
+
+	/**
+	 * @param data compressed data, from its position to its limit
+	 * @return the size of the data once decompressed, as written in its header
+	 * @throws IOException if the header is invalid
+	 */
+	int getDecompressedSize(ByteBuffer data) throws IOException;
+
+	/**
+	 * Decompresses the data from its position to its limit. The buffer position
+	 * is not modified.
+	 *
+	 * @param data the compressed data
+	 * @return the decompressed data
+	 * @throws IOException if the data is not valid for this codec
+	 */
+	byte[] decompress(ByteBuffer data) throws IOException;
+
+	/**
+	 * Decompresses the data read from the stream. Only the compressed data is
+	 * read, the stream is left right after it.
+	 *
+	 * @return the decompressed data
+	 * @throws IOException if the data is not valid for this codec or cannot be
+	 *                     read
+	 */
+	byte[] decompress(InputStream inStream) throws IOException;
+
+	/**
+	 * @param data the data to compress
+	 * @return the compressed data, with its header
+	 */
+	byte[] compress(byte[] data);
+
+}
@@ -1,5 +1,19 @@
 package pokemon.files.archive;
 
 public enum CompressionMethodEnum {
-	NONE, LZ, BLZ;
+	NONE(null), LZ(LZCodec.LZ10), LZ11(LZCodec.LZ11), BLZ(BLZCodec.BLZ);
+
+	private final Codec codec;
+
+	private CompressionMethodEnum(Codec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * @return the codec of the compression method, or null if files are not
+	 *         compressed
+	 */
+	public Codec getCodec() {
+		return codec;
+	}
 }
@@ -0,0 +1,173 @@
+package pokemon.files.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Read-only view of a file name table, as found in the BTNF sub-section of a
+ * NARC and in the FNT of a ROM. The table starts with one main table entry per
+ * directory:
+ * <ul>
+ * <li>Sub-table offset (uint32), relative to the start of the table
+ * <li>First file id (uint16)
+ * <li>Parent directory id (uint16), or the number of directories for the root
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Each sub-table is a list of entries terminated by a 0 byte. An entry starts
+ * with a type byte: below 0x80 it is a file whose name has this length, above
+ * 0x80 it is a directory whose name has the length in the 7 low bits, followed
+ * by its id (uint16).
+ * </p>
+ *
+ * <p>
+ * Names are resolved once when the table is created. Files that have no name
+ * (archives written without sub-tables) get a null path.
+ * </p>
+ */
+public class FileNameTable {
+
+	private static final int MAIN_TABLE_ENTRY_SIZE = 8;
+	private static final int ROOT_DIR_ID = 0xF000;
+
+	private String[] filePaths;
+	private String[] dirPaths;
+	private boolean hasNames;
+
+	/**
+	 * Parses the table. The buffer must start at the first main table entry, its
+	 * limit being the end of the table.
+	 *
+	 * @param table      the table buffer
+	 * @param fileNumber the number of files in the container
+	 */
+	public FileNameTable(ByteBuffer table, int fileNumber) {
+		table = table.slice().order(ByteOrder.LITTLE_ENDIAN);
+		this.filePaths = new String[fileNumber];
+
+		// The root main entry holds the number of directories
+		int dirNumber = table.limit() >= MAIN_TABLE_ENTRY_SIZE ? table.getShort(6) & 0xFFFF : 0;
+		dirNumber = Math.min(dirNumber, table.limit() / MAIN_TABLE_ENTRY_SIZE);
+
+		int[] parents = new int[dirNumber];
+		String[] dirNames = new String[dirNumber];
+		String[][] dirFileNames = new String[dirNumber][];
+		int[] firstFileIds = new int[dirNumber];
+
+		for (int dirIndex = 0; dirIndex < dirNumber; dirIndex++) {
+			int entryOffset = dirIndex * MAIN_TABLE_ENTRY_SIZE;
+			int subTableOffset = table.getInt(entryOffset);
+			firstFileIds[dirIndex] = table.getShort(entryOffset + 4) & 0xFFFF;
+			parents[dirIndex] = dirIndex == 0 ? -1 : (table.getShort(entryOffset + 6) & 0xFFF);
+
+			// Sub-tables are after the main tables, anything else means no names
+			if (subTableOffset < dirNumber * MAIN_TABLE_ENTRY_SIZE || subTableOffset >= table.limit()) {
+				dirFileNames[dirIndex] = new String[0];
+				continue;
+			}
+
+			dirFileNames[dirIndex] = readSubTable(table, subTableOffset, dirNames);
+		}
+
+		// Build full directory paths from the parents
+		this.dirPaths = new String[dirNumber];
+		for (int dirIndex = 0; dirIndex < dirNumber; dirIndex++) {
+			getDirPath(dirIndex, parents, dirNames, 0);
+		}
+
+		// Then files
+		for (int dirIndex = 0; dirIndex < dirNumber; dirIndex++) {
+			int fileId = firstFileIds[dirIndex];
+			for (String fileName : dirFileNames[dirIndex]) {
+				if (fileId < fileNumber) {
+					filePaths[fileId] = dirPaths[dirIndex] + fileName;
+					hasNames = true;
+				}
+				fileId++;
+			}
+		}
+	}
+
+	private String[] readSubTable(ByteBuffer table, int offset, String[] dirNames) {
+		List<String> names = new ArrayList<String>();
+		int position = offset;
+
+		while (position < table.limit()) {
+			int typeValue = table.get(position++) & 0xFF;
+			if (typeValue == 0) {
+				break;
+			}
+
+			int nameLength = typeValue & 0x7F;
+			if (position + nameLength > table.limit()) {
+				break;
+			}
+
+			byte[] nameBytes = new byte[nameLength];
+			table.get(position, nameBytes);
+			String name = new String(nameBytes, StandardCharsets.ISO_8859_1);
+			position += nameLength;
+
+			if (typeValue < 0x80) {
+				// It is a file
+				names.add(name);
+			} else {
+				// It is a folder, remember its name for its own sub-table
+				if (position + 2 > table.limit()) {
+					break;
+				}
+				int dirIndex = (table.getShort(position) & 0xFFFF) - ROOT_DIR_ID;
+				position += 2;
+				if (dirIndex > 0 && dirIndex < dirNames.length) {
+					dirNames[dirIndex] = name;
+				}
+			}
+		}
+
+		return names.toArray(new String[names.size()]);
+	}
+
+	private String getDirPath(int dirIndex, int[] parents, String[] dirNames, int depth) {
+		if (dirPaths[dirIndex] == null) {
+			// Stop on loops, a broken table must not hang the editor
+			if (dirIndex == 0 || depth > dirPaths.length || parents[dirIndex] >= dirPaths.length) {
+				dirPaths[dirIndex] = "";
+			} else {
+				String name = dirNames[dirIndex] == null ? "%d".formatted(dirIndex) : dirNames[dirIndex];
+				dirPaths[dirIndex] = getDirPath(parents[dirIndex], parents, dirNames, depth + 1) + name + "/";
+			}
+		}
+
+		return dirPaths[dirIndex];
+	}
+
+	/**
+	 * @return true if at least one file has a name
+	 */
+	public boolean hasNames() {
+		return hasNames;
+	}
+
+	/**
+	 * @param fileId the file id
+	 * @return the path of the file relative to the root ('/' separated), or null
+	 *         if the file has no name
+	 */
+	public String getFilePath(int fileId) {
+		return filePaths[fileId];
+	}
+
+	/**
+	 * @return all directory paths relative to the root ('/' separated, ending with
+	 *         '/'), the root being the empty string
+	 */
+	public String[] getDirPaths() {
+		return dirPaths;
+	}
+
+}
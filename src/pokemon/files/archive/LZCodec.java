@@ -0,0 +1,357 @@
+package pokemon.files.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Nintendo LZ77 compression, as decompressed by the DS BIOS (type 0x10) and its
+ * extended version LZ11 (type 0x11). The header is the type byte followed by
+ * the decompressed size (uint24, or uint32 after the header if 0).
+ * </p>
+ *
+ * <p>
+ * Data is a list of blocks of 8 entries preceded by a flag byte (MSB first): 0
+ * is a literal byte, 1 is a copy of previously decompressed bytes:
+ * <ul>
+ * <li>LZ10: 2 bytes LDDD, length 3 to 18 and displacement 1 to 4096
+ * <li>LZ11: the first nibble tells the entry size, 2 bytes for lengths up to
+ * 0x10, 3 bytes up to 0x110 and 4 bytes up to 0x10110
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Both instances decompress LZ10 and LZ11, the instance only chooses the
+ * compression format. Compression searches matches with hash chains over the
+ * 4 KiB window.
+ * </p>
+ */
+public class LZCodec implements Codec {
+
+	public static final int LZ10_TYPE = 0x10;
+	public static final int LZ11_TYPE = 0x11;
+
+	public static final LZCodec LZ10 = new LZCodec(LZ10_TYPE);
+	public static final LZCodec LZ11 = new LZCodec(LZ11_TYPE);
+
+	private static final int WINDOW_SIZE = 0x1000;
+	private static final int MIN_MATCH = 3;
+	private static final int LZ10_MAX_MATCH = 0x12;
+	private static final int LZ11_MAX_MATCH = 0x10110;
+	private static final int HASH_BITS = 15;
+	private static final int MAX_CHAIN = 128;
+	// Nothing on the DS is bigger than that, avoids allocating garbage sizes
+	private static final int MAX_DECOMPRESSED_SIZE = 0x10000000;
+
+	private final int type;
+
+	private LZCodec(int type) {
+		this.type = type;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	@Override
+	public boolean isCompressed(ByteBuffer data) {
+		if (data.remaining() < 4) {
+			return false;
+		}
+
+		int dataType = data.get(data.position()) & 0xFF;
+		return dataType == LZ10_TYPE || dataType == LZ11_TYPE;
+	}
+
+	@Override
+	public int getDecompressedSize(ByteBuffer data) throws IOException {
+		Source in = new Source(data.slice());
+		return readSize(in, readType(in));
+	}
+
+	@Override
+	public byte[] decompress(ByteBuffer data) throws IOException {
+		return decode(new Source(data.slice()), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public byte[] decompress(InputStream inStream) throws IOException {
+		return decode(new Source(inStream), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Decompresses only the beginning of the data, to look at a header for
+	 * instance.
+	 *
+	 * @param data    the compressed data, from its position to its limit
+	 * @param maxSize the maximum number of bytes to decompress
+	 * @return the first decompressed bytes
+	 * @throws IOException if the data is not valid LZ data
+	 */
+	public byte[] decompress(ByteBuffer data, int maxSize) throws IOException {
+		return decode(new Source(data.slice()), maxSize);
+	}
+
+	/**
+	 * Decompresses the data only if it is really LZ data: the header must be valid,
+	 * all references must be in the decompressed data and the compressed data must
+	 * end at most 3 bytes (alignment) before the end of the buffer.
+	 *
+	 * @param data the data, from its position to its limit
+	 * @return the decompressed data or null if this is not LZ data
+	 */
+	public byte[] tryDecompress(ByteBuffer data) {
+		if (!isCompressed(data)) {
+			return null;
+		}
+
+		ByteBuffer slice = data.slice();
+		try {
+			byte[] decompressed = decode(new Source(slice), Integer.MAX_VALUE);
+			return slice.remaining() < 4 ? decompressed : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static int readType(Source in) throws IOException {
+		int dataType = in.read();
+		if (dataType != LZ10_TYPE && dataType != LZ11_TYPE) {
+			throw new IOException("Not LZ compressed data (type 0x%02X)".formatted(dataType));
+		}
+
+		return dataType;
+	}
+
+	private static int readSize(Source in, int dataType) throws IOException {
+		int size = in.read() | (in.read() << 8) | (in.read() << 16);
+		if (size == 0) {
+			// Extended header
+			size = in.read() | (in.read() << 8) | (in.read() << 16) | (in.read() << 24);
+		}
+
+		if (size < 0 || size > MAX_DECOMPRESSED_SIZE) {
+			throw new IOException("Invalid LZ decompressed size 0x%X".formatted(size));
+		}
+
+		return size;
+	}
+
+	private static byte[] decode(Source in, int maxSize) throws IOException {
+		int dataType = readType(in);
+		int size = readSize(in, dataType);
+
+		// The output is allocated once from the header
+		byte[] out = new byte[Math.min(size, maxSize)];
+		int outPos = 0;
+		int outSize = out.length;
+
+		while (outPos < outSize) {
+			int flags = in.read();
+			for (int bit = 0x80; bit != 0 && outPos < outSize; bit >>= 1) {
+				if ((flags & bit) == 0) {
+					out[outPos++] = (byte) in.read();
+					continue;
+				}
+
+				int b1 = in.read();
+				int length;
+				int displacement;
+				if (dataType == LZ10_TYPE) {
+					int b2 = in.read();
+					length = (b1 >> 4) + 3;
+					displacement = (((b1 & 0xF) << 8) | b2) + 1;
+				} else if ((b1 >> 4) == 0) {
+					int b2 = in.read();
+					int b3 = in.read();
+					length = (((b1 & 0xF) << 4) | (b2 >> 4)) + 0x11;
+					displacement = (((b2 & 0xF) << 8) | b3) + 1;
+				} else if ((b1 >> 4) == 1) {
+					int b2 = in.read();
+					int b3 = in.read();
+					int b4 = in.read();
+					length = (((b1 & 0xF) << 12) | (b2 << 4) | (b3 >> 4)) + 0x111;
+					displacement = (((b3 & 0xF) << 8) | b4) + 1;
+				} else {
+					int b2 = in.read();
+					length = (b1 >> 4) + 1;
+					displacement = (((b1 & 0xF) << 8) | b2) + 1;
+				}
+
+				if (displacement > outPos) {
+					throw new IOException("Invalid LZ reference at 0x%X".formatted(outPos));
+				}
+
+				// Copies can overlap, copy byte per byte
+				int end = Math.min(outPos + length, outSize);
+				for (; outPos < end; outPos++) {
+					out[outPos] = out[outPos - displacement];
+				}
+			}
+		}
+
+		return out;
+	}
+
+	@Override
+	public byte[] compress(byte[] data) {
+		int size = data.length;
+		int maxMatch = type == LZ10_TYPE ? LZ10_MAX_MATCH : LZ11_MAX_MATCH;
+
+		// Worst case is only literals: 1 flag byte every 8 bytes
+		byte[] out = new byte[8 + size + (size >> 3) + 4];
+		int outPos = 0;
+
+		out[outPos++] = (byte) type;
+		// A size of 0 means that the size is in the extended header
+		if (size != 0 && size <= 0xFFFFFF) {
+			out[outPos++] = (byte) size;
+			out[outPos++] = (byte) (size >> 8);
+			out[outPos++] = (byte) (size >> 16);
+		} else {
+			outPos += 3;
+			out[outPos++] = (byte) size;
+			out[outPos++] = (byte) (size >> 8);
+			out[outPos++] = (byte) (size >> 16);
+			out[outPos++] = (byte) (size >> 24);
+		}
+
+		// Hash chains: head is the last position of a hash, prev links positions
+		// with the same hash in the window
+		int[] head = new int[1 << HASH_BITS];
+		int[] prev = new int[WINDOW_SIZE];
+		Arrays.fill(head, -1);
+
+		int pos = 0;
+		while (pos < size) {
+			int flagPos = outPos++;
+			int flags = 0;
+
+			for (int bit = 0x80; bit != 0 && pos < size; bit >>= 1) {
+				int bestLength = 0;
+				int bestDisplacement = 0;
+
+				if (pos + MIN_MATCH <= size) {
+					int maxLength = Math.min(maxMatch, size - pos);
+					int candidate = head[hash(data, pos)];
+					int chain = MAX_CHAIN;
+
+					while (candidate >= 0 && pos - candidate <= WINDOW_SIZE && chain-- > 0) {
+						// Quick reject on the byte that would make the match longer
+						if (data[candidate + bestLength] == data[pos + bestLength]) {
+							int length = 0;
+							while (length < maxLength && data[candidate + length] == data[pos + length]) {
+								length++;
+							}
+
+							if (length > bestLength) {
+								bestLength = length;
+								bestDisplacement = pos - candidate;
+								if (length == maxLength) {
+									break;
+								}
+							}
+						}
+
+						int next = prev[candidate & (WINDOW_SIZE - 1)];
+						if (next >= candidate) {
+							break;
+						}
+						candidate = next;
+					}
+				}
+
+				if (bestLength >= MIN_MATCH) {
+					flags |= bit;
+					outPos = writeReference(out, outPos, bestLength, bestDisplacement - 1);
+					for (int i = 0; i < bestLength; i++) {
+						insert(data, pos++, head, prev);
+					}
+				} else {
+					out[outPos++] = data[pos];
+					insert(data, pos++, head, prev);
+				}
+			}
+
+			out[flagPos] = (byte) flags;
+		}
+
+		// Keep the compressed data 4 bytes aligned
+		outPos = (outPos + 3) & ~3;
+		return Arrays.copyOf(out, outPos);
+	}
+
+	private int writeReference(byte[] out, int outPos, int length, int displacement) {
+		if (type == LZ10_TYPE) {
+			out[outPos++] = (byte) (((length - 3) << 4) | (displacement >> 8));
+			out[outPos++] = (byte) displacement;
+		} else if (length <= 0x10) {
+			out[outPos++] = (byte) (((length - 1) << 4) | (displacement >> 8));
+			out[outPos++] = (byte) displacement;
+		} else if (length <= 0x110) {
+			int value = length - 0x11;
+			out[outPos++] = (byte) (value >> 4);
+			out[outPos++] = (byte) (((value & 0xF) << 4) | (displacement >> 8));
+			out[outPos++] = (byte) displacement;
+		} else {
+			int value = length - 0x111;
+			out[outPos++] = (byte) (0x10 | (value >> 12));
+			out[outPos++] = (byte) (value >> 4);
+			out[outPos++] = (byte) (((value & 0xF) << 4) | (displacement >> 8));
+			out[outPos++] = (byte) displacement;
+		}
+
+		return outPos;
+	}
+
+	private static int hash(byte[] data, int pos) {
+		int value = (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8) | ((data[pos + 2] & 0xFF) << 16);
+		return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	private static void insert(byte[] data, int pos, int[] head, int[] prev) {
+		if (pos + MIN_MATCH <= data.length) {
+			int hash = hash(data, pos);
+			prev[pos & (WINDOW_SIZE - 1)] = head[hash];
+			head[hash] = pos;
+		}
+	}
+
+	/**
+	 * Reads bytes either from a buffer or from a stream
+	 */
+	private static class Source {
+
+		private final ByteBuffer buffer;
+		private final InputStream stream;
+
+		public Source(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.stream = null;
+		}
+
+		public Source(InputStream stream) {
+			this.buffer = null;
+			this.stream = stream;
+		}
+
+		public int read() throws IOException {
+			if (buffer != null) {
+				if (!buffer.hasRemaining()) {
+					throw new EOFException("Truncated LZ data");
+				}
+				return buffer.get() & 0xFF;
+			}
+
+			int value = stream.read();
+			if (value < 0) {
+				throw new EOFException("Truncated LZ data");
+			}
+			return value;
+		}
+	}
+
+}
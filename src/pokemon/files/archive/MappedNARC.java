@@ -0,0 +1,397 @@
+package pokemon.files.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import pokemon.files.DSBufferManager;
+import pokemon.files.FormatDetector;
+import pokemon.files.headers.GenericHeader;
+import pokemon.files.headers.Header;
+
+/**
+ * <p>
+ * Random-access view of a NARC archive. The archive is memory mapped and only
+ * the BTAF and BTNF sub-sections are parsed when it is opened, files are never
+ * copied until asked for. Each file is served as a little endian slice of the
+ * mapped archive.
+ * </p>
+ *
+ * <p>
+ * Use {@link NARC} to create archives, and this class to look into them and to
+ * extract them. Files are extracted as they are in the archive, compressed
+ * ones included, so the extracted directory can be packed again. The editor
+ * decompresses files when it opens them.
+ * </p>
+ */
+public class MappedNARC implements Closeable {
+
+	private static final String NARC_MAGIC = "NARC";
+
+	private final String archiveName;
+	private final FileChannel channel;
+	private final ByteBuffer archive;
+
+	private final int[] fileStarts;
+	private final int[] fileEnds;
+	private final FileNameTable fileNameTable;
+	private Map<String, Integer> pathMap;
+	private boolean decompress;
+
+	/**
+	 * Maps the archive file and reads its tables.
+	 *
+	 * @param archiveFile the NARC file
+	 * @throws IOException if the file cannot be mapped or is not a NARC
+	 */
+	public MappedNARC(File archiveFile) throws IOException {
+		this(FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ), archiveFile.getName());
+	}
+
+	/**
+	 * Reads the tables of an archive that is already in memory (a file of a ROM
+	 * for instance). The buffer is not copied.
+	 *
+	 * @param archive     the archive content
+	 * @param archiveName the name of the archive (with extension)
+	 * @throws IOException if the buffer is not a NARC
+	 */
+	public MappedNARC(ByteBuffer archive, String archiveName) throws IOException {
+		this(null, archive, archiveName);
+	}
+
+	private MappedNARC(FileChannel channel, String archiveName) throws IOException {
+		this(channel, map(channel), archiveName);
+	}
+
+	private MappedNARC(FileChannel channel, ByteBuffer archive, String archiveName) throws IOException {
+		this.channel = channel;
+		this.archiveName = archiveName;
+		this.archive = archive.slice().order(ByteOrder.LITTLE_ENDIAN);
+		this.decompress = false;
+
+		try {
+			if (this.archive.limit() < GenericHeader.DEFAULT_HEADER_SIZE || !NARC_MAGIC.equals(readMagic(0))) {
+				throw new IOException("%s is not a NARC archive".formatted(archiveName));
+			}
+
+			// BTAF is right after the header
+			int btafOffset = GenericHeader.DEFAULT_HEADER_SIZE;
+			int fileNumber = this.archive.getShort(btafOffset + Header.DEFAULT_HEADER_SIZE) & 0xFFFF;
+			int addressesOffset = btafOffset + Header.DEFAULT_HEADER_SIZE + 4;
+			int btnfOffset = btafOffset + this.archive.getInt(btafOffset + 4);
+			int btnfSize = this.archive.getInt(btnfOffset + 4);
+			// Section sizes are uint32, computed in long so that they cannot overflow
+			long dataOffset = (long) btnfOffset + (btnfSize & 0xFFFFFFFFL) + Header.DEFAULT_HEADER_SIZE;
+			int limit = this.archive.limit();
+			if (dataOffset > limit) {
+				throw new IOException("%s is a truncated NARC archive".formatted(archiveName));
+			}
+
+			// Low 32 bits is start, high 32 bits is end, relative to the GMIF data
+			this.fileStarts = new int[fileNumber];
+			this.fileEnds = new int[fileNumber];
+			for (int fileIndex = 0; fileIndex < fileNumber; fileIndex++) {
+				int addressOffset = addressesOffset + 8 * fileIndex;
+				long start = dataOffset + (this.archive.getInt(addressOffset) & 0xFFFFFFFFL);
+				long end = dataOffset + (this.archive.getInt(addressOffset + 4) & 0xFFFFFFFFL);
+
+				if (start < dataOffset || start > end || end > limit) {
+					throw new IOException("File %d of %s is out of the archive".formatted(fileIndex, archiveName));
+				}
+				fileStarts[fileIndex] = (int) start;
+				fileEnds[fileIndex] = (int) end;
+			}
+
+			ByteBuffer btnf = this.archive.slice(btnfOffset + Header.DEFAULT_HEADER_SIZE,
+					btnfSize - Header.DEFAULT_HEADER_SIZE);
+			this.fileNameTable = new FileNameTable(btnf, fileNumber);
+		} catch (IndexOutOfBoundsException e) {
+			close();
+			throw new IOException("%s is a truncated NARC archive".formatted(archiveName), e);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		try {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private String readMagic(int offset) {
+		byte[] magic = new byte[4];
+		archive.get(offset, magic);
+		return new String(magic, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return the archive name without its extension
+	 */
+	public String getBaseName() {
+		int lastPointIndex = archiveName.lastIndexOf('.');
+		return lastPointIndex == -1 ? archiveName : archiveName.substring(0, lastPointIndex);
+	}
+
+	public int getFileNumber() {
+		return fileStarts.length;
+	}
+
+	public boolean hasFileNames() {
+		return fileNameTable.hasNames();
+	}
+
+	public int getFileSize(int fileIndex) {
+		return fileEnds[fileIndex] - fileStarts[fileIndex];
+	}
+
+	/**
+	 * Returns the file as a slice of the archive. Nothing is copied, and the slice
+	 * stays valid after the archive is closed.
+	 *
+	 * @param fileIndex the index of the file in the archive
+	 * @return a little endian read-only slice
+	 */
+	public ByteBuffer getFile(int fileIndex) {
+		return archive.slice(fileStarts[fileIndex], getFileSize(fileIndex)).asReadOnlyBuffer()
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @param filePath a path returned by {@link #getFilePath(int)}
+	 * @return the file as a slice of the archive or null if there is no such file
+	 * @see #getFile(int)
+	 */
+	public ByteBuffer getFile(String filePath) {
+		int fileIndex = getFileIndex(filePath);
+		return fileIndex == -1 ? null : getFile(fileIndex);
+	}
+
+	/**
+	 * Returns the file as it will be extracted: the slice of the archive, or
+	 * decompressed if it is LZ compressed and decompression is enabled.
+	 *
+	 * @param fileIndex the index of the file in the archive
+	 * @return a little endian buffer with the file content
+	 */
+	public ByteBuffer getContent(int fileIndex) {
+		ByteBuffer file = getFile(fileIndex);
+		if (decompress) {
+			byte[] decompressed = LZCodec.LZ10.tryDecompress(file);
+			if (decompressed != null) {
+				return DSBufferManager.wrap(decompressed);
+			}
+		}
+
+		return file;
+	}
+
+	public boolean isDecompress() {
+		return decompress;
+	}
+
+	/**
+	 * Nothing records which files were compressed, so an archive extracted with
+	 * decompression cannot be packed again as it was.
+	 *
+	 * @param decompress true to decompress LZ compressed files when extracting
+	 *                   (false by default)
+	 */
+	public void setDecompress(boolean decompress) {
+		this.decompress = decompress;
+	}
+
+	/**
+	 * Returns the path of a file in the archive ('/' separated). Files without a
+	 * name are named after the archive and their index, without extension.
+	 *
+	 * @param fileIndex the index of the file in the archive
+	 * @return the path of the file in the archive
+	 */
+	public String getFilePath(int fileIndex) {
+		String path = fileNameTable.getFilePath(fileIndex);
+		return path == null ? "%s_%d".formatted(getBaseName(), fileIndex) : path;
+	}
+
+	/**
+	 * @param filePath a path returned by {@link #getFilePath(int)}
+	 * @return the index of the file or -1 if there is no such file
+	 */
+	public int getFileIndex(String filePath) {
+		if (pathMap == null) {
+			pathMap = new HashMap<String, Integer>();
+			for (int fileIndex = 0; fileIndex < getFileNumber(); fileIndex++) {
+				pathMap.put(getFilePath(fileIndex), fileIndex);
+			}
+		}
+
+		return pathMap.getOrDefault(filePath, -1);
+	}
+
+	/**
+	 * Returns the name the file will have once extracted. Unnamed files get their
+	 * extension from their content ("bin" if unknown), once decompressed.
+	 *
+	 * @param fileIndex the index of the file in the archive
+	 * @return the relative path of the extracted file
+	 */
+	public String getExtractedPath(int fileIndex) {
+		if (fileNameTable.getFilePath(fileIndex) != null) {
+			return getFilePath(fileIndex);
+		}
+
+		return getExtractedPath(fileIndex, getContent(fileIndex));
+	}
+
+	private String getExtractedPath(int fileIndex, ByteBuffer content) {
+		String path = getFilePath(fileIndex);
+		if (fileNameTable.getFilePath(fileIndex) != null) {
+			return path;
+		}
+
+		String extension = FormatDetector.detect(content).getFormat().getExtension();
+		return "%s.%s".formatted(path, extension);
+	}
+
+	/**
+	 * @param archiveFile the archive file
+	 * @return the directory in which the archive is extracted (next to the archive
+	 *         and named like it, without the extension)
+	 */
+	public File getExtractDir(File archiveFile) {
+		return new File(archiveFile.getParentFile(), getBaseName());
+	}
+
+	/**
+	 * Writes one file of the archive in the destination directory. Sub-directories
+	 * are created if needed.
+	 *
+	 * @param fileIndex the index of the file in the archive
+	 * @param destDir   the extraction directory
+	 * @return the written file
+	 * @throws IOException if the file cannot be written, or if its name in the
+	 *                     archive would put it out of the destination directory
+	 */
+	public File extract(int fileIndex, File destDir) throws IOException {
+		ByteBuffer content = getContent(fileIndex);
+
+		// Names come from the archive, "../" must not write anywhere on the disk
+		Path destPath = destDir.toPath().toAbsolutePath().normalize();
+		Path filePath = destPath.resolve(getExtractedPath(fileIndex, content)).normalize();
+		if (!filePath.startsWith(destPath) || filePath.equals(destPath)) {
+			throw new IOException("File %d of %s is named out of the extraction directory (%s)".formatted(fileIndex,
+					archiveName, getFilePath(fileIndex)));
+		}
+		File file = filePath.toFile();
+		file.getParentFile().mkdirs();
+
+		try (FileChannel outChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// Decompressed files are on the heap, the others are still in the mapped file
+			if (channel != null && content.isDirect()) {
+				// Positional transfer, does not touch the channel position so it can be shared
+				long position = fileStarts[fileIndex];
+				long remaining = getFileSize(fileIndex);
+				while (remaining > 0) {
+					long transferred = channel.transferTo(position, remaining, outChannel);
+					if (transferred <= 0) {
+						throw new IOException("%s is smaller than expected".formatted(archiveName));
+					}
+					position += transferred;
+					remaining -= transferred;
+				}
+			} else {
+				while (content.hasRemaining()) {
+					outChannel.write(content);
+				}
+			}
+		}
+
+		return file;
+	}
+
+	/**
+	 * Writes all files of the archive in the destination directory.
+	 *
+	 * @param destDir the extraction directory
+	 * @throws IOException if a file cannot be written
+	 */
+	public void extractAll(File destDir) throws IOException {
+		destDir.mkdirs();
+		for (int fileIndex = 0; fileIndex < getFileNumber(); fileIndex++) {
+			extract(fileIndex, destDir);
+		}
+	}
+
+	/**
+	 * Writes all files of the archive in the destination directory, using a pool
+	 * of workers. Files are independent once the tables are read, so each worker
+	 * extracts its own files with positional reads.
+	 *
+	 * @param destDir     the extraction directory
+	 * @param parallelism the number of workers
+	 * @param progress    called with the number of extracted files each time a
+	 *                    file is written (from the workers)
+	 * @throws IOException if a file cannot be written
+	 */
+	public void extractAll(File destDir, int parallelism, IntConsumer progress) throws IOException {
+		destDir.mkdirs();
+
+		AtomicInteger extractedFiles = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+		List<Future<File>> futures = new ArrayList<Future<File>>(getFileNumber());
+		try {
+			for (int fileIndex = 0; fileIndex < getFileNumber(); fileIndex++) {
+				int index = fileIndex;
+				futures.add(executor.submit(() -> {
+					File file = extract(index, destDir);
+					progress.accept(extractedFiles.incrementAndGet());
+					return file;
+				}));
+			}
+
+			for (Future<File> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Could not extract %s".formatted(archiveName), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Extraction of %s interrupted".formatted(archiveName), e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package pokemon.files.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Random-access view of a NDS ROM image. The ROM is memory mapped and only the
+ * file name table (FNT) and the file allocation table (FAT) are parsed when it
+ * is opened, so even big ROMs open instantly. Each file is served as a little
+ * endian slice of the mapped ROM, nothing is extracted on the disk.
+ * </p>
+ *
+ * <p>
+ * The cartridge header gives the tables:
+ * <ul>
+ * <li>Game title (12 chars) at 0x00, game code (4 chars) at 0x0C
+ * <li>FNT offset (uint32) at 0x40 and size (uint32) at 0x44
+ * <li>FAT offset (uint32) at 0x48 and size (uint32) at 0x4C
+ * </ul>
+ * The FNT has the same layout as the BTNF sub-section of a NARC (see
+ * {@link FileNameTable}). The FAT has a start and an end address (uint32) per
+ * file, relative to the start of the ROM.
+ * </p>
+ *
+ * <p>
+ * Overlays are in the FAT but not in the FNT, they are named like ndstool does
+ * (overlay/overlay_0000.bin).
+ * </p>
+ */
+public class MappedROM implements Closeable {
+
+	private static final int HEADER_SIZE = 0x200;
+	private static final int TITLE_OFFSET = 0x00;
+	private static final int TITLE_SIZE = 12;
+	private static final int GAME_CODE_OFFSET = 0x0C;
+	private static final int GAME_CODE_SIZE = 4;
+	private static final int FNT_OFFSET = 0x40;
+	private static final int FAT_OFFSET = 0x48;
+	private static final int FAT_ENTRY_SIZE = 8;
+	private static final String UNNAMED_FILE_PATH = "overlay/overlay_%04d.bin";
+
+	private final String romName;
+	private final FileChannel channel;
+	private final ByteBuffer rom;
+
+	private final int[] fileStarts;
+	private final int[] fileEnds;
+	private final FileNameTable fileNameTable;
+	private Map<String, Integer> pathMap;
+
+	/**
+	 * Maps the ROM file and reads its tables.
+	 *
+	 * @param romFile the .nds file
+	 * @throws IOException if the file cannot be mapped or is not a ROM
+	 */
+	public MappedROM(File romFile) throws IOException {
+		this(FileChannel.open(romFile.toPath(), StandardOpenOption.READ), romFile.getName());
+	}
+
+	/**
+	 * Reads the tables of a ROM that is already in memory. The buffer is not
+	 * copied.
+	 *
+	 * @param rom     the ROM content
+	 * @param romName the name of the ROM (with extension)
+	 * @throws IOException if the buffer is not a ROM
+	 */
+	public MappedROM(ByteBuffer rom, String romName) throws IOException {
+		this(null, rom, romName);
+	}
+
+	private MappedROM(FileChannel channel, String romName) throws IOException {
+		this(channel, map(channel), romName);
+	}
+
+	private MappedROM(FileChannel channel, ByteBuffer rom, String romName) throws IOException {
+		this.channel = channel;
+		this.romName = romName;
+		this.rom = rom.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		try {
+			if (this.rom.limit() < HEADER_SIZE) {
+				throw new IOException("%s is not a NDS ROM".formatted(romName));
+			}
+
+			int fntOffset = this.rom.getInt(FNT_OFFSET);
+			int fntSize = this.rom.getInt(FNT_OFFSET + 4);
+			int fatOffset = this.rom.getInt(FAT_OFFSET);
+			int fatSize = this.rom.getInt(FAT_OFFSET + 4);
+			if (!isInRom(fntOffset, fntSize) || !isInRom(fatOffset, fatSize) || fatSize % FAT_ENTRY_SIZE != 0) {
+				throw new IOException("%s is not a NDS ROM, its tables are out of the file".formatted(romName));
+			}
+
+			int fileNumber = fatSize / FAT_ENTRY_SIZE;
+			this.fileStarts = new int[fileNumber];
+			this.fileEnds = new int[fileNumber];
+			for (int fileId = 0; fileId < fileNumber; fileId++) {
+				int entryOffset = fatOffset + FAT_ENTRY_SIZE * fileId;
+				fileStarts[fileId] = this.rom.getInt(entryOffset);
+				fileEnds[fileId] = this.rom.getInt(entryOffset + 4);
+
+				if (!isInRom(fileStarts[fileId], fileEnds[fileId] - fileStarts[fileId])) {
+					throw new IOException("File %d of %s is out of the ROM".formatted(fileId, romName));
+				}
+			}
+
+			this.fileNameTable = new FileNameTable(this.rom.slice(fntOffset, fntSize), fileNumber);
+		} catch (IndexOutOfBoundsException e) {
+			close();
+			throw new IOException("%s is a truncated NDS ROM".formatted(romName), e);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		try {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private boolean isInRom(int offset, int size) {
+		// Unsigned in the file, negative means way too far
+		return offset >= 0 && size >= 0 && offset <= rom.limit() - size;
+	}
+
+	private String readString(int offset, int size) {
+		byte[] bytes = new byte[size];
+		rom.get(offset, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1).trim();
+	}
+
+	public String getRomName() {
+		return romName;
+	}
+
+	/**
+	 * @return the game title of the header
+	 */
+	public String getTitle() {
+		return readString(TITLE_OFFSET, TITLE_SIZE);
+	}
+
+	/**
+	 * @return the game code of the header (CPUE for Pokemon Platinum US)
+	 */
+	public String getGameCode() {
+		return readString(GAME_CODE_OFFSET, GAME_CODE_SIZE);
+	}
+
+	public int getFileNumber() {
+		return fileStarts.length;
+	}
+
+	public int getFileSize(int fileId) {
+		return fileEnds[fileId] - fileStarts[fileId];
+	}
+
+	/**
+	 * Returns the file as a slice of the ROM. Nothing is copied, and the slice
+	 * stays valid after the ROM is closed.
+	 *
+	 * @param fileId the id of the file in the FAT
+	 * @return a little endian read-only slice
+	 */
+	public ByteBuffer getFile(int fileId) {
+		return rom.slice(fileStarts[fileId], getFileSize(fileId)).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @param filePath a path returned by {@link #getFilePath(int)}
+	 * @return the file as a slice of the ROM or null if there is no such file
+	 * @see #getFile(int)
+	 */
+	public ByteBuffer getFile(String filePath) {
+		int fileId = getFileId(filePath);
+		return fileId == -1 ? null : getFile(fileId);
+	}
+
+	/**
+	 * Returns the path of a file in the ROM ('/' separated). Files without a name
+	 * are the overlays.
+	 *
+	 * @param fileId the id of the file in the FAT
+	 * @return the path of the file in the ROM
+	 */
+	public String getFilePath(int fileId) {
+		String path = fileNameTable.getFilePath(fileId);
+		return path == null ? UNNAMED_FILE_PATH.formatted(fileId) : path;
+	}
+
+	/**
+	 * @param filePath a path returned by {@link #getFilePath(int)}
+	 * @return the id of the file or -1 if there is no such file
+	 */
+	public int getFileId(String filePath) {
+		if (pathMap == null) {
+			pathMap = new HashMap<String, Integer>();
+			for (int fileId = 0; fileId < getFileNumber(); fileId++) {
+				pathMap.put(getFilePath(fileId), fileId);
+			}
+		}
+
+		return pathMap.getOrDefault(filePath, -1);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+}
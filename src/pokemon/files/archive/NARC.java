@@ -1,22 +1,20 @@
 package pokemon.files.archive;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
 import pokemon.files.DSFileManager;
-import pokemon.files.FileFormat;
-import pokemon.files.FormatEnum;
-import pokemon.files.SubSection;
 import pokemon.files.headers.GenericHeader;
 import pokemon.files.headers.Header;
 import pokemon.files.types.TypeEnum;
@@ -24,128 +22,232 @@ import pokemon.files.types.TypedArray;
 import pokemon.files.types.TypedNumber;
 import pokemon.files.types.TypedVariable;
 
-public class NARC extends FileFormat {
+/**
+ * Writer of NARC archives, it does not load them: archives are read with
+ * {@link MappedNARC}.
+ */
+public class NARC {
 
 	private static final String NARC_MAGIC = "NARC";
+	// Padding between files and at the end of tables is filled with FFh
+	private static final byte[] PADDING_BYTES = new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
 
+	private GenericHeader header;
 	private File archiveFile;
 
 	private BTAF btaf;
 	private BTNF btnf;
 	private GMIF gmif;
 
-	public NARC(File archiveFile, boolean doWriteSubTables) {
-		super(NARC_MAGIC, 0, 3);
+	/**
+	 * Prepares the archive of the directory named like the archive, next to it.
+	 * Archives are read with {@link MappedNARC}.
+	 * 
+	 * @param archiveFile       the NARC file
+	 * @param doWriteSubTables  true to write file names in the archive
+	 * @param compressionMethod the compression applied to each file
+	 * @throws IOException if a file of the directory cannot be read
+	 */
+	public NARC(File archiveFile, boolean doWriteSubTables, CompressionMethodEnum compressionMethod)
+			throws IOException {
+		this(new File(archiveFile.getParent() + File.separator + getBaseName(archiveFile)), archiveFile,
+				doWriteSubTables, compressionMethod);
+	}
+
+	/**
+	 * Prepares the archive of a directory, written in any file (even an existing
+	 * one).
+	 * 
+	 * @param archiveDir        the directory to archive
+	 * @param archiveFile       the NARC file to write
+	 * @param doWriteSubTables  true to write file names in the archive
+	 * @param compressionMethod the compression applied to each file
+	 * @throws IOException if a file of the directory cannot be read
+	 */
+	public NARC(File archiveDir, File archiveFile, boolean doWriteSubTables, CompressionMethodEnum compressionMethod)
+			throws IOException {
+		this.header = new GenericHeader(NARC_MAGIC, GenericHeader.DEFAULT_HEADER_SIZE, 0, 3);
+		this.header.setByteOrder(0xFFFE);
 		this.archiveFile = archiveFile;
-		super.setByteOrder(0xFFFE);
-
-		if (archiveFile.exists()) {
-			// Extract mode!
-			this.btaf = new BTAF(new File[0][]);
-			this.btnf = new BTNF(new String[0][], new File[0][], doWriteSubTables);
-			this.gmif = new GMIF(new File[0][], new long[0][]);
-
-		} else {
-			// Archive mode! Read all files and directories in BFS
-			String archiveName = archiveFile.getName();
-			String archiveNameWoutExtension = archiveName.substring(0, archiveName.length() - 5);
-			File archiveDir = new File(archiveFile.getParent() + File.separator + archiveNameWoutExtension);
-
-			// List directories and process queue
-			List<File[]> files = new ArrayList<File[]>();
-			List<String[]> directories = new ArrayList<String[]>();
-
-			Queue<File> dirQueue = new LinkedList<File>();
-			dirQueue.add(archiveDir);
-
-			while (!dirQueue.isEmpty()) {
-				File dir = dirQueue.poll();
-				List<File> dirFiles = new ArrayList<File>();
-				List<String> dirDirs = new ArrayList<String>();
-
-				// Append files to lists
-				for (File file : dir.listFiles()) {
-					if (file.isFile()) {
-						dirFiles.add(file);
-					} else {
-						dirQueue.offer(file);
-						dirDirs.add(file.getName());
-					}
-				}
+		prepareArchive(archiveDir, doWriteSubTables, compressionMethod);
+	}
 
-				// Create arrays and add to final list
-				File[] dirFilesArray = new File[dirFiles.size()];
-				for (int i = 0; i < dirFiles.size(); i++) {
-					dirFilesArray[i] = dirFiles.get(i);
-				}
-				files.add(dirFilesArray);
+	private static String getBaseName(File archiveFile) {
+		String archiveName = archiveFile.getName();
+		return archiveName.substring(0, archiveName.length() - 5);
+	}
+
+	private void prepareArchive(File archiveDir, boolean doWriteSubTables, CompressionMethodEnum compressionMethod)
+			throws IOException {
+		// Read all files and directories in BFS, list directories and process queue
+		List<File[]> files = new ArrayList<File[]>();
+		List<String[]> directories = new ArrayList<String[]>();
 
-				String[] dirDirsArray = new String[dirDirs.size()];
-				for (int i = 0; i < dirDirs.size(); i++) {
-					dirDirsArray[i] = dirDirs.get(i);
+		Queue<File> dirQueue = new LinkedList<File>();
+		dirQueue.add(archiveDir);
+
+		while (!dirQueue.isEmpty()) {
+			File dir = dirQueue.poll();
+			List<File> dirFiles = new ArrayList<File>();
+			List<String> dirDirs = new ArrayList<String>();
+
+			// Append files to lists
+			for (File file : dir.listFiles()) {
+				if (file.isFile()) {
+					dirFiles.add(file);
+				} else {
+					dirQueue.offer(file);
+					dirDirs.add(file.getName());
 				}
-				directories.add(dirDirsArray);
 			}
 
-			// Create arrays
-			File[][] filesArray = new File[files.size()][];
-			for (int i = 0; i < files.size(); i++) {
-				filesArray[i] = files.get(i);
+			// Create arrays and add to final list
+			File[] dirFilesArray = new File[dirFiles.size()];
+			for (int i = 0; i < dirFiles.size(); i++) {
+				dirFilesArray[i] = dirFiles.get(i);
 			}
+			files.add(dirFilesArray);
 
-			String[][] directoriesArray = new String[directories.size()][];
-			for (int i = 0; i < directories.size(); i++) {
-				directoriesArray[i] = directories.get(i);
+			String[] dirDirsArray = new String[dirDirs.size()];
+			for (int i = 0; i < dirDirs.size(); i++) {
+				dirDirsArray[i] = dirDirs.get(i);
 			}
+			directories.add(dirDirsArray);
+		}
 
-			// Create BTAF, BTNF and GMIF
-			this.btaf = new BTAF(filesArray);
-			this.btnf = new BTNF(directoriesArray, filesArray, doWriteSubTables);
-			this.gmif = new GMIF(filesArray, btaf.getAddresses());
+		// Create arrays
+		File[][] filesArray = new File[files.size()][];
+		for (int i = 0; i < files.size(); i++) {
+			filesArray[i] = files.get(i);
+		}
 
-			// Update size
-			updateSize();
+		String[][] directoriesArray = new String[directories.size()][];
+		for (int i = 0; i < directories.size(); i++) {
+			directoriesArray[i] = directories.get(i);
 		}
+
+		// Compress files if needed, the archive layout depends on compressed sizes
+		byte[][][] filesData = compressFiles(filesArray, compressionMethod.getCodec());
+
+		// Create BTAF, BTNF and GMIF
+		this.btaf = new BTAF(getFileSizes(filesArray, filesData));
+		this.btnf = new BTNF(directoriesArray, filesArray, doWriteSubTables);
+		this.gmif = new GMIF(filesArray, btaf.getAddresses(), filesData);
+
+		// Update size
+		updateSize();
+	}
+
+	public NARC(File archiveFile, boolean doWriteSubTables) throws IOException {
+		this(archiveFile, doWriteSubTables, CompressionMethodEnum.NONE);
 	}
 
-	public NARC(File archiveFile) {
+	public NARC(File archiveFile) throws IOException {
 		this(archiveFile, false);
 	}
 
-	public File getExtractDir() {
-		return btnf.getExtractDir();
+	private static byte[][][] compressFiles(File[][] files, Codec codec) throws IOException {
+		// Without compression files are directly transferred from the disk
+		if (codec == null) {
+			return null;
+		}
+
+		byte[][][] filesData = new byte[files.length][][];
+		for (int rowIndex = 0; rowIndex < files.length; rowIndex++) {
+			filesData[rowIndex] = new byte[files[rowIndex].length][];
+			for (int fileIndex = 0; fileIndex < files[rowIndex].length; fileIndex++) {
+				byte[] data = Files.readAllBytes(files[rowIndex][fileIndex].toPath());
+				filesData[rowIndex][fileIndex] = codec.compress(data);
+			}
+		}
+
+		return filesData;
+	}
+
+	private static long[][] getFileSizes(File[][] files, byte[][][] filesData) {
+		long[][] fileSizes = new long[files.length][];
+		for (int rowIndex = 0; rowIndex < files.length; rowIndex++) {
+			fileSizes[rowIndex] = new long[files[rowIndex].length];
+			for (int fileIndex = 0; fileIndex < files[rowIndex].length; fileIndex++) {
+				fileSizes[rowIndex][fileIndex] = filesData == null ? files[rowIndex][fileIndex].length()
+						: filesData[rowIndex][fileIndex].length;
+			}
+		}
+
+		return fileSizes;
 	}
 
+	/**
+	 * Writes the archive. The layout is already known from the BTAF, so all
+	 * headers and tables are written at once and then files are transferred from
+	 * their channel to the archive channel without going through the heap (unless
+	 * they were compressed).
+	 * 
+	 * @throws IOException if a file cannot be read or the archive written
+	 */
 	public void createArchive() throws IOException {
-		OutputStream outStream = new DataOutputStream(new FileOutputStream(archiveFile));
-		super.store(outStream);
+		ByteArrayOutputStream headerStream = new ByteArrayOutputStream(
+				GenericHeader.DEFAULT_HEADER_SIZE + btaf.getSize() + btnf.getSize() + Header.DEFAULT_HEADER_SIZE);
+		header.store(headerStream);
+		btaf.store(headerStream);
+		btnf.store(headerStream);
+		gmif.storeHeader(headerStream);
+
+		try (FileChannel outChannel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(outChannel, ByteBuffer.wrap(headerStream.toByteArray()));
+			gmif.storeData(outChannel);
+		}
 	}
 
-	@Override
-	protected void updateSize() {
-		super.setSize(GenericHeader.DEFAULT_HEADER_SIZE + btaf.getSize() + btnf.getSize() + gmif.getSize());
+	private static void writeFully(FileChannel outChannel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			outChannel.write(buffer);
+		}
 	}
 
-	@Override
-	protected void loadData(InputStream inStream) throws IOException {
-		btaf.load(inStream);
-		btnf.load(inStream);
+	private static void writePadding(OutputStream outStream, long paddingSize) throws IOException {
+		for (; paddingSize > 0; paddingSize -= PADDING_BYTES.length) {
+			outStream.write(PADDING_BYTES, 0, (int) Math.min(paddingSize, PADDING_BYTES.length));
+		}
+	}
+
+	private static void writePadding(FileChannel outChannel, long paddingSize) throws IOException {
+		for (; paddingSize > 0; paddingSize -= PADDING_BYTES.length) {
+			writeFully(outChannel, ByteBuffer.wrap(PADDING_BYTES, 0, (int) Math.min(paddingSize, PADDING_BYTES.length)));
+		}
+	}
 
-		// Recreate GMIF sub-section, so it has the files
-		gmif = new GMIF(
-				btnf.getArchiveFilesNames(archiveFile.getParentFile(), archiveFile.getName(), btaf.getFileNumber()),
-				btaf.getAddresses());
-		gmif.load(inStream);
+	private void updateSize() {
+		header.setSectionSize(GenericHeader.DEFAULT_HEADER_SIZE + btaf.getSize() + btnf.getSize() + gmif.getSize());
 	}
 
-	@Override
-	protected void storeData(OutputStream outStream) throws IOException {
-		btaf.store(outStream);
-		btnf.store(outStream);
-		gmif.store(outStream);
+	/**
+	 * Section of the archive, only written.
+	 */
+	private static class ArchiveSection {
+
+		private Header header;
+
+		public ArchiveSection(String magicId, int sectionSize) {
+			this.header = new Header(magicId, sectionSize);
+		}
+
+		public int getSize() {
+			return header.getSectionSize().getIntValue();
+		}
+
+		protected void setSize(int size) {
+			header.setSectionSize(size);
+		}
+
+		public void storeHeader(OutputStream outStream) throws IOException {
+			header.store(outStream);
+		}
+
 	}
 
-	private static class BTAF extends SubSection {
+	private static class BTAF extends ArchiveSection {
 
 		private static final String BTAF_MAGIC = "BTAF";
 		private static final int BTAF_DEFAULT_SIZE = Header.DEFAULT_HEADER_SIZE + 0x4;
@@ -154,16 +256,16 @@ public class NARC extends FileFormat {
 		private TypedNumber fileNumber;
 		private TypedArray fileAddresses;
 
-		public BTAF(File[][] fileNames) {
+		public BTAF(long[][] fileSizes) {
 			super(BTAF_MAGIC, BTAF_DEFAULT_SIZE);
 
 			// For each file fill the current offset
 			List<Long> addressesList = new ArrayList<Long>();
 			long currentOffset = 0;
-			for (File[] row : fileNames) {
-				for (File file : row) {
+			for (long[] row : fileSizes) {
+				for (long fileSize : row) {
 					// Compute end address and merge both start and end
-					long endAddress = currentOffset + file.length();
+					long endAddress = currentOffset + fileSize;
 					long fileAddresses = ((endAddress) << 32) | currentOffset;
 					addressesList.add(fileAddresses);
 
@@ -187,7 +289,7 @@ public class NARC extends FileFormat {
 
 			this.fileAddresses = new TypedArray(fileAddresses);
 
-			super.setSize(BTAF_DEFAULT_SIZE + fileAddresses.length * TypeEnum.UINT64.getByteSize());
+			setSize(BTAF_DEFAULT_SIZE + fileAddresses.length * TypeEnum.UINT64.getByteSize());
 		}
 
 		public long[][] getAddresses() {
@@ -209,17 +311,8 @@ public class NARC extends FileFormat {
 			return fileNumber.getIntValue();
 		}
 
-		@Override
-		protected void loadData(InputStream inStream) throws IOException {
-			DSFileManager.read(inStream, fileNumber);
-			DSFileManager.read(inStream, TypeEnum.UINT16); // Padding
-
-			this.fileAddresses = new TypedArray(TypeEnum.UINT64, fileNumber.getIntValue());
-			DSFileManager.read(inStream, fileAddresses);
-		}
-
-		@Override
-		protected void storeData(OutputStream outStream) throws IOException {
+		public void store(OutputStream outStream) throws IOException {
+			storeHeader(outStream);
 			DSFileManager.write(outStream, fileNumber);
 			DSFileManager.write(outStream, PADDING);
 			DSFileManager.write(outStream, fileAddresses);
@@ -227,16 +320,15 @@ public class NARC extends FileFormat {
 
 	}
 
-	private static class BTNF extends SubSection {
+	private static class BTNF extends ArchiveSection {
 
 		private static final String BTNF_MAGIC = "BTNF";
 		private static final int BTNF_DEFAULT_SIZE = Header.DEFAULT_HEADER_SIZE;
+		private static final TypedNumber TERMINATOR = new TypedNumber(0, TypeEnum.UINT8);
 
 		private TypedNumber[][] mainTables;
 		private TypedVariable[][][] subTables;
 
-		private File extractDir;
-
 		/**
 		 * <p>
 		 * Directories and files in the archive. The first index contains the root
@@ -366,155 +458,14 @@ public class NARC extends FileFormat {
 				if ((size & 0b11) != 0) {
 					size += 4 - (size & 0b11);
 				}
-				super.setSize(size);
+				setSize(size);
 			} else {
-				super.setSize(BTNF_DEFAULT_SIZE + 0x8 * dirNumber);
+				setSize(BTNF_DEFAULT_SIZE + 0x8 * dirNumber);
 			}
 		}
 
-		public String[][] getArchiveFilesNames(File archivePath, String archiveName, int fileNumber) {
-			int dirNumber = mainTables.length;
-			String archiveNameWoutExt = archiveName.substring(0, archiveName.length() - 5);
-			String[][] archiveFiles = new String[dirNumber][];
-
-			extractDir = new File(archivePath.getAbsolutePath() + File.separator + archiveNameWoutExt);
-			extractDir.mkdir();
-
-			// If no sub-table, then name the files using the archive name
-			if (subTables == null) {
-				String fileFormat = "%s_%d";
-				// If only one directory, then no need to work
-				if (dirNumber == 1) {
-					String[] paths = new String[fileNumber];
-					for (int fileIndex = 0; fileIndex < fileNumber; fileIndex++) {
-						paths[fileIndex] = extractDir.getAbsolutePath() + File.separator
-								+ fileFormat.formatted(archiveNameWoutExt, fileIndex);
-					}
-					archiveFiles[0] = paths;
-
-				} else {
-					int fileOffset = dirNumber;
-					for (int dirIndex = 0; dirIndex < dirNumber - 1; dirIndex++) {
-						// Number of files in the directory is the difference of file index with the
-						// next directory (except for the last one)
-						int dirFileNumber = mainTables[dirIndex + 1][1].getIntValue()
-								- mainTables[dirIndex][1].getIntValue();
-						String[] paths = new String[dirFileNumber];
-						for (int fileIndex = 0; fileIndex < dirFileNumber; fileIndex++) {
-							paths[fileIndex] = extractDir.getAbsolutePath() + File.separator
-									+ fileFormat.formatted(archiveNameWoutExt, fileOffset++);
-						}
-
-						archiveFiles[dirIndex] = paths;
-					}
-
-					// The last one is the difference with the number of files - 1
-					int lastDirFileNumber = mainTables[dirNumber - 1][1].getIntValue() - fileNumber - 1;
-					String[] paths = new String[lastDirFileNumber];
-
-					for (int fileIndex = 0; fileIndex < lastDirFileNumber; fileIndex++) {
-						paths[fileIndex] = archivePath.getAbsolutePath() + File.separator
-								+ fileFormat.formatted(archiveName, fileOffset++);
-					}
-					archiveFiles[dirNumber - 1] = paths;
-				}
-
-			} else {
-				// TODO
-			}
-
-			return archiveFiles;
-		}
-
-		public File getExtractDir() {
-			return extractDir;
-		}
-
-		@Override
-		protected void loadData(InputStream inStream) throws IOException {
-			// First main table will say how many directories there is
-			TypedNumber firstOffset = DSFileManager.read(inStream, TypeEnum.UINT32);
-			TypedNumber firstFileId = DSFileManager.read(inStream, TypeEnum.UINT16);
-			TypedNumber dirNumber = DSFileManager.read(inStream, TypeEnum.UINT16);
-
-			this.mainTables = new TypedNumber[dirNumber.getIntValue()][3];
-			mainTables[0][0] = firstOffset;
-			mainTables[0][1] = firstFileId;
-			mainTables[0][2] = dirNumber;
-
-			for (int dirIndex = 1; dirIndex < dirNumber.getIntValue(); dirIndex++) {
-				mainTables[dirIndex][0] = DSFileManager.read(inStream, TypeEnum.UINT32);
-				mainTables[dirIndex][1] = DSFileManager.read(inStream, TypeEnum.UINT16);
-				mainTables[dirIndex][2] = DSFileManager.read(inStream, TypeEnum.UINT16);
-			}
-
-			// There are 8 + 8 * dirNumber bytes used here, if section size then no
-			// sub-table
-			if (super.getSize() != BTNF_DEFAULT_SIZE + 8 * dirNumber.getIntValue()) {
-				// Create sub-table
-				this.subTables = new TypedVariable[dirNumber.getIntValue()][][];
-
-				// Compute the first offset
-				int offset = BTNF_DEFAULT_SIZE + 8 * dirNumber.getIntValue();
-
-				for (int dirIndex = 0; dirIndex < dirNumber.getIntValue(); dirIndex++) {
-					// Read until we reach the offset...
-					for (int i = 0; i < mainTables[dirIndex][0].getIntValue() - offset; i++) {
-						DSFileManager.read(inStream, TypeEnum.UINT8);
-						offset++;
-					}
-
-					// Use a list because we don't know how many entries there are
-					List<TypedVariable[]> entries = new ArrayList<TypedVariable[]>();
-
-					// Read until the terminator is reached
-					boolean terminated = false;
-					do {
-						TypedNumber typeByte = DSFileManager.read(inStream, TypeEnum.UINT8);
-						int typeValue = typeByte.getIntValue();
-						if (typeValue == 0) {
-							terminated = true;
-							offset += TypeEnum.UINT8.getByteSize();
-
-						} else if (typeValue < 0x80) {
-							// It is a file
-							TypedVariable[] fileEntry = new TypedVariable[2];
-							fileEntry[0] = typeByte;
-							fileEntry[1] = DSFileManager.read(inStream, TypeEnum.UINT8, typeValue);
-							offset += TypeEnum.UINT8.getByteSize() + typeValue;
-
-							entries.add(fileEntry);
-
-						} else if (typeValue > 0x80) {
-							// It is a folder
-							TypedVariable[] dirEntry = new TypedVariable[3];
-							dirEntry[0] = typeByte;
-							dirEntry[1] = DSFileManager.read(inStream, TypeEnum.UINT8, typeValue & 0b01111111);
-							dirEntry[2] = DSFileManager.read(inStream, TypeEnum.UINT16);
-							offset += TypeEnum.UINT8.getByteSize() + typeValue
-									& 0b01111111 + TypeEnum.UINT16.getByteSize();
-
-							entries.add(dirEntry);
-						}
-					} while (!terminated);
-
-					TypedVariable[][] subTable = new TypedVariable[entries.size()][];
-					for (int i = 0; i < entries.size(); i++) {
-						subTable[i] = entries.get(i);
-					}
-
-					this.subTables[dirIndex] = subTable;
-				}
-
-				// Read the padding if the offset is lesser than the size
-				for (int i = 0; i < getSize() - offset; i++) {
-					DSFileManager.read(inStream, TypeEnum.UINT8);
-				}
-			}
-		}
-
-		@Override
-		protected void storeData(OutputStream outStream) throws IOException {
+		public void store(OutputStream outStream) throws IOException {
+			storeHeader(outStream);
 			int dirNumber = this.mainTables.length;
 
 			// Write main tables first
@@ -545,34 +496,27 @@ public class NARC extends FileFormat {
 					}
 
 					// Write the terminator byte for the directory
-					DSFileManager.write(outStream, new TypedNumber(0, TypeEnum.UINT8));
+					DSFileManager.write(outStream, TERMINATOR);
 					offset += TypeEnum.UINT8.getByteSize();
 				}
 
 				// Do not forget the padding (fill with FFh)
-				for (int i = 0; i < getSize() - offset; i++) {
-					DSFileManager.write(outStream, new TypedNumber(0xFF, TypeEnum.UINT8));
-				}
+				writePadding(outStream, getSize() - offset);
 			}
 		}
 	}
 
-	private static class GMIF extends SubSection {
+	private static class GMIF extends ArchiveSection {
 
 		private static final String GMIF_MAGIC = "GMIF";
 		private static final int GMIF_DEFAULT_SIZE = Header.DEFAULT_HEADER_SIZE;
 
 		private String[][] archivedFilesPath;
 		private long[][] fileAddresses;
+		// Compressed files, null if files are read from the disk
+		private byte[][][] filesData;
 
-		public GMIF(String[][] archivedFilesPath, long[][] fileAddresses) {
-			super(GMIF_MAGIC, GMIF_DEFAULT_SIZE);
-			this.archivedFilesPath = archivedFilesPath;
-			this.fileAddresses = fileAddresses;
-			updateSize();
-		}
-
-		public GMIF(File[][] archivedFilesPath, long[][] fileAddresses) {
+		public GMIF(File[][] archivedFilesPath, long[][] fileAddresses, byte[][][] filesData) {
 			super(GMIF_MAGIC, GMIF_DEFAULT_SIZE);
 			this.archivedFilesPath = new String[archivedFilesPath.length][];
 
@@ -584,8 +528,10 @@ public class NARC extends FileFormat {
 				for (int fileIndex = 0; fileIndex < fileNumber; fileIndex++) {
 					this.archivedFilesPath[rowIndex][fileIndex] = row[fileIndex].getAbsolutePath();
 				}
+				rowIndex++;
 			}
 			this.fileAddresses = fileAddresses;
+			this.filesData = filesData;
 			updateSize();
 		}
 
@@ -596,124 +542,56 @@ public class NARC extends FileFormat {
 				if (padding != 0) {
 					padding = 4 - padding;
 				}
-				super.setSize((int) (GMIF_DEFAULT_SIZE + lastEndAddress + padding));
+				setSize((int) (GMIF_DEFAULT_SIZE + lastEndAddress + padding));
 			}
 		}
 
-		@Override
-		protected void loadData(InputStream inStream) throws IOException {
+		/**
+		 * Writes the files, directly transferred from their channel to the archive
+		 * channel (unless they were compressed).
+		 * 
+		 * @param outChannel the archive channel, positioned at the GMIF data
+		 * @throws IOException if a file cannot be read or the archive written
+		 */
+		public void storeData(FileChannel outChannel) throws IOException {
 			long currentOffset = 0;
+
 			int fileIndex = 0;
-			// Write directly in the files
-			for (String[] row : archivedFilesPath) {
-				for (String filePath : row) {
+			for (int rowIndex = 0; rowIndex < archivedFilesPath.length; rowIndex++) {
+				String[] row = archivedFilesPath[rowIndex];
+				for (int rowFileIndex = 0; rowFileIndex < row.length; rowFileIndex++) {
+					String file = row[rowFileIndex];
 					long startAddress = fileAddresses[fileIndex][0];
-					long endAddress = fileAddresses[fileIndex][1];
+					long endAddress = fileAddresses[fileIndex++][1];
+					writePadding(outChannel, startAddress - currentOffset);
 
-					// Read padding
-					if (currentOffset < startAddress) {
-						int bufferSize = (int) (startAddress - currentOffset);
-						DSFileManager.readBytes(inStream, new byte[bufferSize]);
-						currentOffset += bufferSize;
+					if (filesData != null) {
+						writeFully(outChannel, ByteBuffer.wrap(filesData[rowIndex][rowFileIndex]));
+						currentOffset = endAddress;
+						continue;
 					}
 
-					// A file can be empty (why? idk)
-					if (startAddress == endAddress) {
-						// If empty, just create file...
-						File file = new File("%s.bin".formatted(filePath));
-						file.createNewFile();
-					} else {
-						// Read magic bytes (don't forget to add offset)
-						byte[] magicBuffer = new byte[4];
-						int magicRead = DSFileManager.readBytes(inStream, magicBuffer);
-						boolean isSmallFile = magicRead != 4;
-						String extension = "bin";
-
-						// If the file is not "small", then there is an extension
-						if (!isSmallFile) {
-							String magic = new String(magicBuffer);
-							extension = FormatEnum.getExtensionFromMagic(magic);
-						}
-
-						// Create file
-						File file = new File("%s.%s".formatted(filePath, extension));
-						file.createNewFile();
-
-						// Ignore if file is empty
-						DataOutputStream outStream = new DataOutputStream(new FileOutputStream(file, false));
-
-						// Write file
-						// Write magic bytes
-						outStream.write(magicBuffer, 0, magicRead);
-						currentOffset += magicRead;
-
-						// If file is bigger than 4 bytes write the rest
-						if (!isSmallFile) {
-							byte[] buffer;
-
-							// If bytes read is not the buffer size, then EOF reached
-							int bytesRead = 0;
-							do {
-								int bufferSize = (int) (endAddress - currentOffset < 1024 ? endAddress - currentOffset
-										: 1024);
-								buffer = new byte[bufferSize];
-								bytesRead = DSFileManager.readBytes(inStream, buffer);
-								System.out.println("0x%08X".formatted(currentOffset));
-								currentOffset += bytesRead;
-								outStream.write(buffer, 0, bytesRead);
-							} while (currentOffset != endAddress);
+					try (FileChannel inChannel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+						long position = 0;
+						long size = endAddress - startAddress;
+						while (position < size) {
+							long transferred = inChannel.transferTo(position, size - position, outChannel);
+							if (transferred <= 0) {
+								throw new IOException("%s is smaller than expected".formatted(file));
+							}
+							position += transferred;
 						}
-
-						outStream.close();
 					}
-
-					// Increase file index
-					System.out.println(fileIndex);
-					fileIndex++;
+					currentOffset = endAddress;
 				}
 			}
-		}
-
-		@Override
-		protected void storeData(OutputStream outStream) throws IOException {
-			// Save current offset to compute padding
-			long currentOffset = 0;
-
-			// Just put the files into the stream
-			int fileIndex = 0;
-			for (String[] row : archivedFilesPath) {
-				for (String file : row) {
-					// If the start address is not the current offset, then add padding
-					long startAddress = fileAddresses[fileIndex++][0];
-
-					// Write padding if any
-					while (currentOffset < startAddress) {
-						DSFileManager.write(outStream, new TypedNumber(0xFF, TypeEnum.UINT8));
-						currentOffset++;
-					}
 
-					byte[] buffer = new byte[1024];
-					DataInputStream inStream = new DataInputStream(new FileInputStream(file));
-
-					// If bytes read is not the buffer size, then EOF reached
-					int bytesRead = 0;
-					do {
-						bytesRead = inStream.read(buffer);
-						DSFileManager.writeBytes(outStream, buffer, bytesRead);
-						currentOffset += bytesRead;
-					} while (bytesRead == buffer.length);
-
-					inStream.close();
-				}
-			}
+			writePadding(outChannel, getPaddingSize(currentOffset));
+		}
 
-			// Add final padding
-			long padding = currentOffset & 0b11;
-			if (padding != 0) {
-				for (; padding < 4; padding++) {
-					DSFileManager.write(outStream, new TypedNumber(0xFF, TypeEnum.UINT8));
-				}
-			}
+		private static long getPaddingSize(long offset) {
+			long padding = offset & 0b11;
+			return padding == 0 ? 0 : 4 - padding;
 		}
 
 	}
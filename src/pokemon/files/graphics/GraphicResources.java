@@ -29,25 +29,110 @@ public class GraphicResources {
 			return bitDepthValue == 3 ? FOUR_BIT_DEPTH : EIGHT_BIT_DEPTH;
 		}
 	}
-	
-	public static int getBGR555FromRGB(Color color) {
-		int r = color.getRed() >> 3;
-		int g = (color.getGreen() >> 3) << 5;
-		int b = (color.getBlue() >> 3) << 10;
 
-		return r + g + b;
+	/**
+	 * How pixels are ordered in tile data: tile after tile (each tile line by
+	 * line), or line by line over the whole image like a bitmap
+	 */
+	public enum TileLayout {
+		TILED(0), LINEAR(1);
+
+		private int layoutValue;
+
+		private TileLayout(int layoutValue) {
+			this.layoutValue = layoutValue;
+		}
+
+		public int getLayoutValue() {
+			return layoutValue;
+		}
+
+		public static TileLayout fromLayoutValue(int layoutValue) {
+			// Only the first bit, the others are used for something else
+			return (layoutValue & 1) == 1 ? LINEAR : TILED;
+		}
 	}
 	
-	public static Color getRGBFromBGR555(int bgr) {
-		int r = (bgr & 0b11111) << 3;
-		int g = ((bgr >> 5) & 0b11111) << 3;
-		int b = ((bgr >> 10) & 0b11111) << 3;
+	public static final int BGR555_COLOR_NUMBER = 0x8000;
+
+	// 15 bits colors are expanded to 8 bits per component by repeating the high
+	// bits, done once for every color
+	private static final int[] BGR555_TO_ARGB = createARGBTable();
+	// Nearest 5 bits value of each 8 bits component
+	private static final int[] COMPONENT_TO_5_BITS = createQuantizeTable();
+
+	private static int expandComponent(int component) {
+		return (component << 3) | (component >> 2);
+	}
+
+	private static int[] createARGBTable() {
+		int[] table = new int[BGR555_COLOR_NUMBER];
+		for (int bgr = 0; bgr < BGR555_COLOR_NUMBER; bgr++) {
+			int r = expandComponent(bgr & 0b11111);
+			int g = expandComponent((bgr >> 5) & 0b11111);
+			int b = expandComponent((bgr >> 10) & 0b11111);
+			table[bgr] = 0xFF000000 | (r << 16) | (g << 8) | b;
+		}
+
+		return table;
+	}
+
+	private static int[] createQuantizeTable() {
+		int[] table = new int[0x100];
+		int component = 0;
+		for (int value = 0; value < table.length; value++) {
+			// Go to the next 5 bits value while it is closer
+			while (component < 0b11111
+					&& Math.abs(expandComponent(component + 1) - value) <= Math.abs(expandComponent(component) - value)) {
+				component++;
+			}
+			table[value] = component;
+		}
+
+		return table;
+	}
+
+	/**
+	 * @param bgr a BGR555 color, the 16th bit is ignored
+	 * @return the ARGB color, always opaque
+	 */
+	public static int getARGBFromBGR555(int bgr) {
+		return BGR555_TO_ARGB[bgr & 0x7FFF];
+	}
+
+	/**
+	 * Converts a color to the nearest BGR555 color, the alpha is ignored.
+	 * {@link #getARGBFromBGR555(int)} colors give back the same BGR555 color.
+	 *
+	 * @param argb the ARGB color
+	 * @return the BGR555 color
+	 */
+	public static int getBGR555FromARGB(int argb) {
+		int r = COMPONENT_TO_5_BITS[(argb >> 16) & 0xFF];
+		int g = COMPONENT_TO_5_BITS[(argb >> 8) & 0xFF];
+		int b = COMPONENT_TO_5_BITS[argb & 0xFF];
 
-		int rError = r >> 5;
-		int gError = g >> 5;
-		int bError = b >> 5;
+		return r | (g << 5) | (b << 10);
+	}
+
+	/**
+	 * Converts a whole BGR555 palette to ARGB colors
+	 *
+	 * @param bgr  the BGR555 colors
+	 * @param argb the destination, at least as long as bgr
+	 */
+	public static void getARGBFromBGR555(short[] bgr, int[] argb) {
+		for (int i = 0; i < bgr.length; i++) {
+			argb[i] = BGR555_TO_ARGB[bgr[i] & 0x7FFF];
+		}
+	}
 
-		return new Color(r + rError, g + gError, b + bError);
+	public static int getBGR555FromRGB(Color color) {
+		return getBGR555FromARGB(color.getRGB());
+	}
+
+	public static Color getRGBFromBGR555(int bgr) {
+		return new Color(getARGBFromBGR555(bgr));
 	}
 
-}
\ No newline at end of file
+}
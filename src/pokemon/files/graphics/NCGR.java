@@ -3,16 +3,19 @@ package pokemon.files.graphics;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+import pokemon.files.DSBufferManager;
 import pokemon.files.DSFileManager;
 import pokemon.files.FileFormat;
 import pokemon.files.SubSection;
 import pokemon.files.graphics.GraphicResources.ColorBitDepth;
+import pokemon.files.graphics.GraphicResources.TileLayout;
 import pokemon.files.headers.GenericHeader;
+import pokemon.files.headers.Header;
 import pokemon.files.types.TypeEnum;
-import pokemon.files.types.TypedArray;
 import pokemon.files.types.TypedNumber;
-import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
 
 public class NCGR extends FileFormat {
 
@@ -35,8 +38,11 @@ public class NCGR extends FileFormat {
 		this(0, 0, ColorBitDepth.FOUR_BIT_DEPTH);
 	}
 
-	public Tile[] createTiles() {
-		return rahc.getTiles();
+	/**
+	 * @return the tiles of the file, modifying them modifies the file
+	 */
+	public TileSheet getTileSheet() {
+		return rahc.getTileSheet();
 	}
 
 	public int getTileX() {
@@ -51,6 +57,10 @@ public class NCGR extends FileFormat {
 		return rahc.getColorBitDepth();
 	}
 
+	public TileLayout getTileLayout() {
+		return rahc.getTileLayout();
+	}
+
 	public void setSOPCSubsection(boolean set) {
 		this.hasSOPC = set;
 		super.setSubsectionNumber(set ? 2 : 1);
@@ -59,6 +69,8 @@ public class NCGR extends FileFormat {
 
 	@Override
 	protected void updateSize() {
+		// Tiles may have been added or removed since the load
+		rahc.updateSize();
 		int size = GenericHeader.DEFAULT_HEADER_SIZE + rahc.getSize();
 		if (super.getSubsectionNumber() == 2) {
 			size += sopc.getSize();
@@ -77,6 +89,16 @@ public class NCGR extends FileFormat {
 		updateSize();
 	}
 
+	/**
+	 * Writes the file with the current tiles, packed back to the depth and the
+	 * layout they were loaded from
+	 */
+	@Override
+	public void store(OutputStream outStream) throws IOException {
+		updateSize();
+		super.store(outStream);
+	}
+
 	@Override
 	protected void storeData(OutputStream outStream) throws IOException {
 		rahc.store(outStream);
@@ -89,7 +111,10 @@ public class NCGR extends FileFormat {
 
 		private static final String RAHC_MAGIC = "RAHC";
 		private static final int DEFAULT_RAHC_SIZE = 0x20;
-		private static final TypedNumber CONSTANT1 = new TypedNumber(0x0, TypeEnum.UINT32);
+		private static final int RAHC_FIELDS_SIZE = DEFAULT_RAHC_SIZE - Header.DEFAULT_HEADER_SIZE;
+		private static final int UNKNOWN_DIMENSION = 0xFFFF;
+		// Width of the screen
+		private static final int UNKNOWN_DIMENSION_TILES_PER_ROW = 32;
 		private static final TypedNumber CONSTANT2 = new TypedNumber(0x18, TypeEnum.UINT32);
 
 		private TypedNumber tileY;
@@ -97,8 +122,15 @@ public class NCGR extends FileFormat {
 		private TypedNumber colorBitDepth;
 		private TypedNumber unknown1;
 		private TypedNumber unknown2;
+		private TypedNumber layout;
 		private TypedNumber tileDataSizeInBytes;
-		private TypedArray tileData;
+		private TileSheet tileSheet;
+		// Number of tiles in tileDataSizeInBytes, the sheet can be padded on load
+		private int storedTileNumber;
+
+		// Dimensions to show the tiles, different from the file ones when unknown
+		private int tilesPerRow;
+		private int rowNumber;
 
 		public RAHC(int tileX, int tileY, ColorBitDepth colorBitDepth) {
 			super(RAHC_MAGIC, DEFAULT_RAHC_SIZE);
@@ -107,89 +139,111 @@ public class NCGR extends FileFormat {
 			this.colorBitDepth = new TypedNumber(colorBitDepth.getBitDepthValue(), TypeEnum.UINT32);
 			this.unknown1 = new TypedNumber(0, TypeEnum.UINT16);
 			this.unknown2 = new TypedNumber(0, TypeEnum.UINT16);
-			int size = 64 * tileX * tileY * 1024;
-			if (colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH) {
-				size >>= 1;
-			}
-			this.tileDataSizeInBytes = new TypedNumber(size, TypeEnum.UINT32);
-			this.tileData = new TypedArray(TypeEnum.UINT8, 64 * tileX * tileY); // Store each pixel
-
-			super.setSize(DEFAULT_RAHC_SIZE + TypeEnum.UINT8.getByteSize() * 64 * tileX * tileY);
-		}
-
-		public Tile[] getTiles() {
-			Tile[] tiles = new Tile[tileY.getIntValue() * tileX.getIntValue()];
-			int tileX = this.tileX.getIntValue();
-			int tileY = this.tileY.getIntValue();
-			for (int indexX = 0; indexX < tileX; indexX++) {
-				for (int indexY = 0; indexY < tileY; indexY++) {
-					int[] tileData = new int[64];
-					for (int i = 0; i < 64; i++) {
-						tileData[i] = this.tileData.getIntValue(i + 64 * indexX + 64 * tileX * indexY);
-					}
-					tiles[indexY * tileX + indexX] = new Tile(tileData);
-				}
-			}
+			this.layout = new TypedNumber(TileLayout.TILED.getLayoutValue(), TypeEnum.UINT32);
+			this.tilesPerRow = tileX;
+			this.rowNumber = tileY;
+			this.tileDataSizeInBytes = new TypedNumber(TileCodec.getDataSize(tileX * tileY, colorBitDepth),
+					TypeEnum.UINT32);
+			this.tileSheet = new TileSheet(tileX * tileY); // Store each pixel
+			this.storedTileNumber = tileX * tileY;
+
+			updateSize();
+		}
 
-			return tiles;
+		public TileSheet getTileSheet() {
+			return tileSheet;
 		}
 
 		public int getTileX() {
-			return tileX.getIntValue();
+			return tilesPerRow;
 		}
 
 		public int getTileY() {
-			return tileY.getIntValue();
+			return rowNumber;
+		}
+
+		public TileLayout getTileLayout() {
+			return TileLayout.fromLayoutValue(layout.getIntValue());
+		}
+
+		/**
+		 * Some files only give the size of the data, not the size of the image
+		 */
+		private boolean hasUnknownDimensions() {
+			return tileX.getIntValue() == UNKNOWN_DIMENSION || tileY.getIntValue() == UNKNOWN_DIMENSION;
 		}
 
 		public ColorBitDepth getColorBitDepth() {
 			return ColorBitDepth.fromBitDepth(colorBitDepth.getIntValue());
 		}
 
+		/**
+		 * The loaded size is kept while the number of tiles does not change, so tiles
+		 * padding the image are not written and partial tiles stay partial
+		 */
+		private int getTileDataSize() {
+			if (tileSheet.getTileNumber() == storedTileNumber) {
+				return tileDataSizeInBytes.getIntValue();
+			}
+
+			return TileCodec.getDataSize(tileSheet.getTileNumber(), getColorBitDepth());
+		}
+
+		private void updateSize() {
+			super.setSize(DEFAULT_RAHC_SIZE + getTileDataSize());
+		}
+
 		@Override
 		protected void loadData(InputStream inStream) throws IOException {
-			DSFileManager.read(inStream, this.tileY);
-			DSFileManager.read(inStream, this.tileX);
-			DSFileManager.read(inStream, this.colorBitDepth);
-			DSFileManager.read(inStream, this.unknown1);
-			DSFileManager.read(inStream, this.unknown2);
-			DSFileManager.read(inStream, TypeEnum.UINT32); // Padding
-			DSFileManager.read(inStream, this.tileDataSizeInBytes);
-			DSFileManager.read(inStream, TypeEnum.UINT32); // Offset?
-
-			int size;
-			if (tileX.getIntValue() == 0xFFFF || tileX.getIntValue() == 0xFFFF) {
-				int totalPixels = tileDataSizeInBytes.getIntValue() << (4 - colorBitDepth.getIntValue());
-				int tilePerRow = (int) Math.ceil(Math.sqrt(totalPixels)) >> 3;
-				this.tileX.setValue(tilePerRow);
-				this.tileY.setValue(tilePerRow);
-			}
-			size = 64 * tileX.getIntValue() * tileY.getIntValue();
-			this.tileData = new TypedArray(TypeEnum.UINT8, size);
-
-			// If 4 bits depth, each byte is 2 pixels
-			if (colorBitDepth.getValue() == ColorBitDepth.FOUR_BIT_DEPTH.getBitDepthValue()) {
-				TypedArray data = DSFileManager.read(inStream, TypeEnum.UINT8, tileDataSizeInBytes.getIntValue());
-				int index = 0;
-				for (int doublePixel : data.getIntValues()) {
-					this.tileData.setValue(doublePixel & 0xF, index++);
-					this.tileData.setValue((doublePixel >> 4) & 0xF, index++);
-				}
+			ByteBuffer buffer = DSBufferManager.readBuffer(inStream, RAHC_FIELDS_SIZE);
+			DSBufferManager.read(buffer, this.tileY);
+			DSBufferManager.read(buffer, this.tileX);
+			DSBufferManager.read(buffer, this.colorBitDepth);
+			DSBufferManager.read(buffer, this.unknown1);
+			DSBufferManager.read(buffer, this.unknown2);
+			DSBufferManager.read(buffer, this.layout);
+			DSBufferManager.read(buffer, this.tileDataSizeInBytes);
+			DSBufferManager.skip(buffer, TypeEnum.UINT32.getByteSize()); // Offset?
+
+			int dataSize = tileDataSizeInBytes.getIntValue();
+			if (hasUnknownDimensions()) {
+				// Only the number of tiles is known, shown as wide as the screen
+				int tileNumber = TileCodec.getTileNumber(dataSize, getColorBitDepth());
+				tilesPerRow = Math.min(tileNumber, UNKNOWN_DIMENSION_TILES_PER_ROW);
+				rowNumber = tilesPerRow == 0 ? 0 : (tileNumber + tilesPerRow - 1) / tilesPerRow;
 			} else {
-				DSFileManager.read(inStream, tileData);
+				tilesPerRow = tileX.getIntValue();
+				rowNumber = tileY.getIntValue();
+			}
+
+			// Decoded from the raw bytes in one go, 8 bits tiles are not even copied
+			byte[] data = DSBufferManager.readBuffer(inStream, dataSize).array();
+			this.tileSheet = TileCodec.decode(data, 0, data.length, getColorBitDepth(), getTileLayout(), tilesPerRow);
+			if (tileSheet.getTileNumber() < tilesPerRow * rowNumber) {
+				tileSheet.setTileNumber(tilesPerRow * rowNumber);
 			}
+			this.storedTileNumber = tileSheet.getTileNumber();
 		}
 
 		@Override
 		protected void storeData(OutputStream outStream) throws IOException {
-			DSFileManager.write(outStream, this.tileY);
-			DSFileManager.write(outStream, this.tileX);
-			DSFileManager.write(outStream, this.colorBitDepth);
-			DSFileManager.write(outStream, this.unknown1);
-			DSFileManager.write(outStream, this.unknown2);
-			DSFileManager.write(outStream, CONSTANT1);
-			DSFileManager.write(outStream, this.tileDataSizeInBytes);
-			DSFileManager.write(outStream, CONSTANT2);
+			// Packed in one go, the pixels only go through the heap once
+			int dataSize = getTileDataSize();
+			byte[] data = TileCodec.encode(tileSheet, getColorBitDepth(), getTileLayout(), tilesPerRow);
+			this.tileDataSizeInBytes.setValue(dataSize);
+			this.storedTileNumber = tileSheet.getTileNumber();
+
+			ByteBuffer buffer = DSBufferManager.allocate(RAHC_FIELDS_SIZE);
+			DSBufferManager.write(buffer, this.tileY);
+			DSBufferManager.write(buffer, this.tileX);
+			DSBufferManager.write(buffer, this.colorBitDepth);
+			DSBufferManager.write(buffer, this.unknown1);
+			DSBufferManager.write(buffer, this.unknown2);
+			DSBufferManager.write(buffer, this.layout);
+			DSBufferManager.write(buffer, this.tileDataSizeInBytes);
+			DSBufferManager.write(buffer, CONSTANT2);
+			DSBufferManager.writeBuffer(outStream, buffer);
+			DSFileManager.writeBytes(outStream, data, dataSize);
 		}
 
 	}
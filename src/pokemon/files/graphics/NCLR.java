@@ -4,7 +4,9 @@ import java.awt.Color;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+import pokemon.files.DSBufferManager;
 import pokemon.files.DSFileManager;
 import pokemon.files.FileFormat;
 import pokemon.files.SubSection;
@@ -83,6 +85,7 @@ public class NCLR extends FileFormat {
 
 		private static final String TTLP_MAGIC = "TTLP";
 		private static final int TTLP_DEFAULT_SIZE = Header.DEFAULT_HEADER_SIZE + 0x10;
+		private static final int TTLP_FIELDS_SIZE = TTLP_DEFAULT_SIZE - Header.DEFAULT_HEADER_SIZE;
 		private static final TypedNumber PADDING = new TypedNumber(0, TypeEnum.UINT32);
 		private static final TypedNumber COLORS_PER_PALETTE = new TypedNumber(0x10, TypeEnum.UINT32);
 
@@ -129,11 +132,10 @@ public class NCLR extends FileFormat {
 			paletteData.setValue(GraphicResources.getBGR555FromRGB(color), index);
 		}
 
-		public Color[] getColors() {
-			Color[] colors = new Color[paletteData.length()];
-			for (int i = 0; i < colors.length; i++) {
-				colors[i] = GraphicResources.getRGBFromBGR555(paletteData.getIntValue(i));
-			}
+		public int[] getColors() {
+			// Whole palette read at once and converted with the lookup table
+			int[] colors = new int[paletteData.length()];
+			GraphicResources.getARGBFromBGR555(paletteData.getShortValues(), colors);
 			return colors;
 		}
 
@@ -143,17 +145,20 @@ public class NCLR extends FileFormat {
 
 		@Override
 		protected void loadData(InputStream inStream) throws IOException {
-			DSFileManager.read(inStream, this.paletteBitDepth);
-			DSFileManager.read(inStream, TypeEnum.UINT32); // Padding
-			DSFileManager.read(inStream, this.paletteDataSize);
-			DSFileManager.read(inStream, TypeEnum.UINT32); // Color per palette
+			ByteBuffer buffer = DSBufferManager.readBuffer(inStream, TTLP_FIELDS_SIZE);
+			DSBufferManager.read(buffer, this.paletteBitDepth);
+			DSBufferManager.skip(buffer, TypeEnum.UINT32.getByteSize()); // Padding
+			DSBufferManager.read(buffer, this.paletteDataSize);
+			DSBufferManager.skip(buffer, TypeEnum.UINT32.getByteSize()); // Color per palette
 		
 			int size = this.paletteDataSize.getIntValue();
 			if ((paletteBitDepth.getIntValue() & 0b11) == 3 && size != 0x200) {
 				size = 0x200 - size;
 			}
 
-			this.paletteData = DSFileManager.read(inStream, TypeEnum.UINT16, size / 2);
+			// All colors are read at once
+			ByteBuffer colors = DSBufferManager.readBuffer(inStream, size);
+			this.paletteData = DSBufferManager.read(colors, TypeEnum.UINT16, size / 2);
 		}
 
 		@Override
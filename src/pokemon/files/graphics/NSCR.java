@@ -3,7 +3,9 @@ package pokemon.files.graphics;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+import pokemon.files.DSBufferManager;
 import pokemon.files.DSFileManager;
 import pokemon.files.FileFormat;
 import pokemon.files.SubSection;
@@ -13,6 +15,7 @@ import pokemon.files.types.TypeEnum;
 import pokemon.files.types.TypedArray;
 import pokemon.files.types.TypedNumber;
 import pokemon.logic.ScreenData;
+import pokemon.logic.ScreenMap;
 
 public class NSCR extends FileFormat {
 
@@ -26,10 +29,20 @@ public class NSCR extends FileFormat {
 		updateSize();
 	}
 
+	public NSCR(ScreenMap screenMap) {
+		super(NSCR_MAGIC, 0, 1);
+		this.nrcs = new NRCS(screenMap);
+		updateSize();
+	}
+
 	public NSCR() {
 		this(0, 0, new int[0]);
 	}
 
+	public ScreenMap createScreenMap() {
+		return nrcs.getScreenMap();
+	}
+
 	public ScreenData[] createScreenData() {
 		return nrcs.getScreenData();
 	}
@@ -61,6 +74,7 @@ public class NSCR extends FileFormat {
 
 		private static final String NRCS_MAGIC = "NRCS";
 		private static final int NRCS_DEFAULT_SIZE = Header.DEFAULT_HEADER_SIZE + 0x14;
+		private static final int NRCS_FIELDS_SIZE = 0xC;
 		private static final TypedNumber PADDING = new TypedNumber(0, TypeEnum.UINT32);
 
 		private TypedNumber screenWidth;
@@ -79,6 +93,19 @@ public class NSCR extends FileFormat {
 			super.setSize(NRCS_DEFAULT_SIZE + TypeEnum.UINT16.getByteSize() * screenData.length);
 		}
 
+		public NRCS(ScreenMap screenMap) {
+			this(screenMap.getWidth() << 3, screenMap.getHeight() << 3, new int[0]);
+			this.screenDataSize.setValue(screenMap.length() * TypeEnum.UINT16.getByteSize());
+			this.screenData = new TypedArray(screenMap.getEntries());
+
+			super.setSize(NRCS_DEFAULT_SIZE + TypeEnum.UINT16.getByteSize() * screenMap.length());
+		}
+
+		public ScreenMap getScreenMap() {
+			// Entries are copied in one go, no object per cell
+			return new ScreenMap(getScreenWidth(), getSceenHeight(), screenData.getShortValues());
+		}
+
 		public ScreenData[] getScreenData() {
 			ScreenData[] data = new ScreenData[screenData.length()];
 			int[] rawData = screenData.getIntValues();
@@ -99,14 +126,15 @@ public class NSCR extends FileFormat {
 
 		@Override
 		protected void loadData(InputStream inStream) throws IOException {
-			DSFileManager.read(inStream, screenWidth);
-			DSFileManager.read(inStream, screenHeight);
-			DSFileManager.read(inStream, TypeEnum.UINT32); // Padding
-			DSFileManager.read(inStream, screenDataSize);
+			ByteBuffer buffer = DSBufferManager.readBuffer(inStream, NRCS_FIELDS_SIZE);
+			DSBufferManager.read(buffer, screenWidth);
+			DSBufferManager.read(buffer, screenHeight);
+			DSBufferManager.skip(buffer, TypeEnum.UINT32.getByteSize()); // Padding
+			DSBufferManager.read(buffer, screenDataSize);
 
 			int size = screenDataSize.getIntValue() >> (TypeEnum.UINT16.getByteSize() - 1);
 			screenData = new TypedArray(TypeEnum.UINT16, size);
-			DSFileManager.read(inStream, screenData);
+			DSBufferManager.read(DSBufferManager.readBuffer(inStream, screenData.getSize()), screenData);
 			
 			super.setSize(NRCS_DEFAULT_SIZE + TypeEnum.UINT16.getByteSize() * screenData.length());
 		}
@@ -0,0 +1,205 @@
+package pokemon.files.graphics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import pokemon.files.graphics.GraphicResources.ColorBitDepth;
+import pokemon.files.graphics.GraphicResources.TileLayout;
+import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
+
+/**
+ * <p>
+ * Converts RAHC tile data to tile sheets and back. The data is either tiled
+ * (tile after tile, which is the order of {@link TileSheet}) or linear (lines
+ * of the whole image), with 4 bits pixels packed two per byte, low bits first.
+ * </p>
+ *
+ * <p>
+ * 4 bits data is unpacked with a table giving the two pixels of each byte,
+ * written with a single 16 bits store, and packed back from a single 16 bits
+ * load per byte.
+ * </p>
+ */
+public class TileCodec {
+
+	// Both pixels of a 4 bits byte, first pixel in the low byte
+	private static final short[] NIBBLE_PAIRS = createNibblePairs();
+	private static final VarHandle SHORT_VIEW = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	// No instantiation
+	private TileCodec() {
+	}
+
+	private static short[] createNibblePairs() {
+		short[] pairs = new short[0x100];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = (short) ((i & 0xF) | ((i >> 4) << 8));
+		}
+		return pairs;
+	}
+
+	/**
+	 * @param length        size of the tile data in bytes
+	 * @param colorBitDepth the depth of the pixels
+	 * @return the number of tiles in the data, a partial tile counts
+	 */
+	public static int getTileNumber(int length, ColorBitDepth colorBitDepth) {
+		int pixelNumber = colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH ? length << 1 : length;
+		return (pixelNumber + TileSheet.PIXELS_PER_TILE - 1) / TileSheet.PIXELS_PER_TILE;
+	}
+
+	/**
+	 * @param tileNumber    number of tiles
+	 * @param colorBitDepth the depth of the pixels
+	 * @return the size of the tile data in bytes
+	 */
+	public static int getDataSize(int tileNumber, ColorBitDepth colorBitDepth) {
+		int pixelNumber = tileNumber * TileSheet.PIXELS_PER_TILE;
+		return colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH ? pixelNumber >> 1 : pixelNumber;
+	}
+
+	/**
+	 * Creates a sheet from RAHC tile data. 8 bits tiled data filling the whole
+	 * array is used as is, not copied!
+	 *
+	 * @param data          the RAHC tile data
+	 * @param offset        start of the tile data in the array
+	 * @param length        size of the tile data in bytes
+	 * @param colorBitDepth the depth of the pixels
+	 * @param layout        the order of the pixels
+	 * @param tilesPerRow   width of the image in tiles, only used by the linear
+	 *                      layout
+	 * @return the tile sheet
+	 */
+	public static TileSheet decode(byte[] data, int offset, int length, ColorBitDepth colorBitDepth,
+			TileLayout layout, int tilesPerRow) {
+		int tileNumber = getTileNumber(length, colorBitDepth);
+		int pixelNumber = tileNumber * TileSheet.PIXELS_PER_TILE;
+
+		if (layout == TileLayout.TILED) {
+			if (colorBitDepth == ColorBitDepth.EIGHT_BIT_DEPTH) {
+				if (offset == 0 && length == data.length && length == pixelNumber) {
+					return new TileSheet(data);
+				}
+				return new TileSheet(Arrays.copyOfRange(data, offset, offset + pixelNumber));
+			}
+
+			byte[] pixels = new byte[pixelNumber];
+			unpack(data, offset, length, pixels, 0);
+			return new TileSheet(pixels);
+		}
+
+		byte[] pixels = decodeLinear(data, offset, length, colorBitDepth, Math.max(1, tilesPerRow), pixelNumber);
+		return new TileSheet(pixels);
+	}
+
+	/**
+	 * Splits 4 bits pixels, one pixel per byte in the destination
+	 *
+	 * @param data       packed pixels
+	 * @param offset     start of the packed pixels
+	 * @param length     number of bytes to unpack
+	 * @param pixels     the destination, 2 * length bytes are written
+	 * @param destOffset start in the destination
+	 */
+	public static void unpack(byte[] data, int offset, int length, byte[] pixels, int destOffset) {
+		for (int i = 0; i < length; i++) {
+			SHORT_VIEW.set(pixels, destOffset + (i << 1), NIBBLE_PAIRS[data[offset + i] & 0xFF]);
+		}
+	}
+
+	/**
+	 * Joins pixels two by two as 4 bits pixels, the opposite of
+	 * {@link #unpack(byte[], int, int, byte[], int)}
+	 *
+	 * @param pixels     one pixel per byte, only the low 4 bits are kept
+	 * @param offset     start of the pixels, 2 * length pixels are read
+	 * @param data       the destination
+	 * @param destOffset start in the destination
+	 * @param length     number of bytes to write
+	 */
+	public static void pack(byte[] pixels, int offset, byte[] data, int destOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			int pair = (short) SHORT_VIEW.get(pixels, offset + (i << 1));
+			data[destOffset + i] = (byte) ((pair & 0xF) | ((pair >> 4) & 0xF0));
+		}
+	}
+
+	/**
+	 * Each line of 8 pixels of the image goes in its tile
+	 */
+	private static byte[] decodeLinear(byte[] data, int offset, int length, ColorBitDepth colorBitDepth,
+			int tilesPerRow, int pixelNumber) {
+		boolean isPacked = colorBitDepth == ColorBitDepth.FOUR_BIT_DEPTH;
+		int dataPixelNumber = isPacked ? length << 1 : length;
+		int lineWidth = tilesPerRow * Tile.TILE_SIZE;
+
+		byte[] pixels = new byte[pixelNumber];
+		// Image pixel index of the start of each line of 8 pixels
+		for (int src = 0; src + Tile.TILE_SIZE <= dataPixelNumber; src += Tile.TILE_SIZE) {
+			int imageY = src / lineWidth;
+			int tileIndex = (imageY >> 3) * tilesPerRow + (src % lineWidth) / Tile.TILE_SIZE;
+			int dest = TileSheet.getOffset(tileIndex) + (imageY & 7) * Tile.TILE_SIZE;
+			// Image not a whole number of tile rows, outside of the tiles
+			if (dest >= pixelNumber) {
+				continue;
+			}
+
+			if (isPacked) {
+				unpack(data, offset + (src >> 1), Tile.TILE_SIZE >> 1, pixels, dest);
+			} else {
+				System.arraycopy(data, offset + src, pixels, dest, Tile.TILE_SIZE);
+			}
+		}
+
+		return pixels;
+	}
+
+	/**
+	 * Creates RAHC tile data from a sheet, the opposite of
+	 * {@link #decode(byte[], int, int, ColorBitDepth, TileLayout, int)}
+	 *
+	 * @param tiles         the tiles to encode
+	 * @param colorBitDepth 4 bits data has 2 pixels per byte, low bits first
+	 * @param layout        the order of the pixels
+	 * @param tilesPerRow   width of the image in tiles, only used by the linear
+	 *                      layout
+	 * @return the RAHC tile data
+	 */
+	public static byte[] encode(TileSheet tiles, ColorBitDepth colorBitDepth, TileLayout layout, int tilesPerRow) {
+		int pixelNumber = tiles.getTileNumber() * TileSheet.PIXELS_PER_TILE;
+		byte[] pixels = tiles.getPixels();
+		if (layout == TileLayout.LINEAR) {
+			pixels = encodeLinear(pixels, pixelNumber, Math.max(1, tilesPerRow));
+		}
+
+		if (colorBitDepth == ColorBitDepth.EIGHT_BIT_DEPTH) {
+			return Arrays.copyOf(pixels, pixelNumber);
+		}
+
+		byte[] data = new byte[pixelNumber >> 1];
+		pack(pixels, 0, data, 0, data.length);
+		return data;
+	}
+
+	private static byte[] encodeLinear(byte[] pixels, int pixelNumber, int tilesPerRow) {
+		int lineWidth = tilesPerRow * Tile.TILE_SIZE;
+
+		byte[] linear = new byte[pixelNumber];
+		for (int dest = 0; dest + Tile.TILE_SIZE <= pixelNumber; dest += Tile.TILE_SIZE) {
+			int imageY = dest / lineWidth;
+			int tileIndex = (imageY >> 3) * tilesPerRow + (dest % lineWidth) / Tile.TILE_SIZE;
+			int src = TileSheet.getOffset(tileIndex) + (imageY & 7) * Tile.TILE_SIZE;
+			if (src < pixelNumber) {
+				System.arraycopy(pixels, src, linear, dest, Tile.TILE_SIZE);
+			}
+		}
+
+		return linear;
+	}
+
+}
@@ -1,20 +1,41 @@
 package pokemon.files.types;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Array of values of the same type. Values are packed in a little endian byte
+ * buffer (exactly like in the file) and are only wrapped in a
+ * {@link TypedNumber} when asked with {@link #getValue(int)} or
+ * {@link #getValues()}. Values are unsigned, as in a {@link TypedNumber}.
+ */
 public class TypedArray extends TypedVariable {
 
-	private TypedNumber[] values;
+	private int length;
+	private ByteBuffer values;
 
 	public TypedArray(TypeEnum type, int length) {
 		super(type);
-		this.values = new TypedNumber[length];
-		for (int i = 0; i < length; i++) {
-			this.values[i] = new TypedNumber(0, type);
-		}
+		this.length = length;
+		this.values = ByteBuffer.allocate(length * type.getByteSize()).order(ByteOrder.LITTLE_ENDIAN);
 	}
 
 	public TypedArray(TypedNumber[] values, TypeEnum type) {
-		super(type);
-		this.values = values;
+		this(type, values.length);
+		setValues(values);
+	}
+
+	/**
+	 * Creates an array from the packed little endian values of the buffer. The
+	 * values are copied and the buffer position is moved after them.
+	 *
+	 * @param values the buffer to read values from
+	 * @param type   the type of the values
+	 * @param length the number of values
+	 */
+	public TypedArray(ByteBuffer values, TypeEnum type, int length) {
+		this(type, length);
+		setValues(values);
 	}
 
 	public TypedArray(long[] values, TypeEnum type) {
@@ -52,165 +73,253 @@ public class TypedArray extends TypedVariable {
 		setValues(str.toCharArray());
 	}
 
+	private int getByteSize() {
+		return getType().getByteSize();
+	}
+
 	public void setValue(TypedNumber value, int index) {
-		this.values[index] = value;
+		setValue(value.getValue(), index);
 	}
 
 	public void setValue(long value, int index) {
-		this.values[index] = new TypedNumber(value, this.getType());
+		int offset = index * getByteSize();
+		switch (getByteSize()) {
+		case 1 -> values.put(offset, (byte) value);
+		case 2 -> values.putShort(offset, (short) value);
+		case 4 -> values.putInt(offset, (int) value);
+		default -> values.putLong(offset, value);
+		}
 	}
 
 	public void setValue(int value, int index) {
-		this.values[index] = new TypedNumber(value, this.getType());
+		setValue((long) value, index);
 	}
 
 	public void setValue(short value, int index) {
-		this.values[index] = new TypedNumber(value, this.getType());
+		setValue((long) value, index);
 	}
 
 	public void setValue(char value, int index) {
-		this.values[index] = new TypedNumber(value, this.getType());
+		setValue((long) value, index);
 	}
 
 	public void setValue(byte value, int index) {
-		this.values[index] = new TypedNumber(value, this.getType());
+		setValue((long) value, index);
 	}
 
 	public void setValue(float value, int index) {
-		this.values[index] = new TypedNumber(value);
+		setValue(Float.floatToIntBits(value), index);
 	}
 
 	public void setValue(double value, int index) {
-		this.values[index] = new TypedNumber(value);
+		setValue(Double.doubleToLongBits(value), index);
 	}
 
 	public void setValue(boolean value, int index) {
-		this.values[index] = new TypedNumber(value);
+		setValue(value ? 1 : 0, index);
 	}
 
 	public void setValues(TypedNumber[] values) {
-		for (int i = 0; i < this.values.length; i++) {
+		for (int i = 0; i < length; i++) {
 			setValue(values[i], i);
 		}
 	}
 
+	/**
+	 * Copies packed little endian values from the buffer, and moves the buffer
+	 * position after them.
+	 *
+	 * @param values the buffer to read values from
+	 */
+	public void setValues(ByteBuffer values) {
+		ByteBuffer source = values.slice(values.position(), getSize());
+		this.values.put(0, source, 0, getSize());
+		values.position(values.position() + getSize());
+	}
+
 	public void setValues(long[] values) {
-		for (int i = 0; i < this.values.length; i++) {
-			setValue(values[i], i);
+		if (getByteSize() == 8) {
+			this.values.asLongBuffer().put(values, 0, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				setValue(values[i], i);
+			}
 		}
 	}
 
 	public void setValues(int[] values) {
-		for (int i = 0; i < this.values.length; i++) {
-			setValue(values[i], i);
+		if (getByteSize() == 4) {
+			this.values.asIntBuffer().put(values, 0, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				setValue(values[i], i);
+			}
 		}
 	}
 
 	public void setValues(short[] values) {
-		for (int i = 0; i < this.values.length; i++) {
-			setValue(values[i], i);
+		if (getByteSize() == 2) {
+			this.values.asShortBuffer().put(values, 0, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				setValue(values[i], i);
+			}
 		}
 	}
 
 	public void setValues(char[] values) {
-		for (int i = 0; i < this.values.length; i++) {
-			setValue(values[i], i);
+		if (getByteSize() == 2) {
+			this.values.asCharBuffer().put(values, 0, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				setValue(values[i], i);
+			}
 		}
 	}
 
 	public void setValues(byte[] values) {
-		for (int i = 0; i < this.values.length; i++) {
-			setValue(values[i], i);
+		if (getByteSize() == 1) {
+			this.values.put(0, values, 0, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				setValue(values[i], i);
+			}
 		}
 	}
 
 	public void setValues(float[] values) {
-		for (int i = 0; i < this.values.length; i++) {
+		for (int i = 0; i < length; i++) {
 			setValue(values[i], i);
 		}
 	}
 
 	public void setValues(double[] values) {
-		for (int i = 0; i < this.values.length; i++) {
+		for (int i = 0; i < length; i++) {
 			setValue(values[i], i);
 		}
 	}
 
 	public void setValues(boolean[] values) {
-		for (int i = 0; i < this.values.length; i++) {
+		for (int i = 0; i < length; i++) {
 			setValue(values[i], i);
 		}
 	}
 
+	/**
+	 * Creates a number wrapper for the value. Modifying the returned number does
+	 * not modify the array.
+	 *
+	 * @param index the index of the value
+	 * @return a new number containing the value
+	 */
 	public TypedNumber getValue(int index) {
-		return this.values[index];
+		return new TypedNumber(getLongValue(index), getType());
 	}
 
 	public long getLongValue(int index) {
-		return this.values[index].getValue();
+		int offset = index * getByteSize();
+		return switch (getByteSize()) {
+		case 1 -> values.get(offset) & 0xFFL;
+		case 2 -> values.getShort(offset) & 0xFFFFL;
+		case 4 -> values.getInt(offset) & 0xFFFFFFFFL;
+		default -> values.getLong(offset);
+		};
 	}
 
 	public int getIntValue(int index) {
-		return this.values[index].getIntValue();
+		return (int) getLongValue(index);
 	}
 
 	public short getShortValue(int index) {
-		return this.values[index].getShortValue();
+		return (short) getLongValue(index);
 	}
 
 	public char getCharValue(int index) {
-		return this.values[index].getCharValue();
+		return (char) getLongValue(index);
 	}
 
 	public byte getByteValue(int index) {
-		return this.values[index].getByteValue();
+		return (byte) getLongValue(index);
 	}
 
 	public float getFloatValue(int index) {
-		return this.values[index].getFloatValue();
+		return Float.intBitsToFloat((int) getLongValue(index));
 	}
 
 	public double getDoubleValue(int index) {
-		return this.values[index].getDoubleValue();
+		return Double.longBitsToDouble(getLongValue(index));
 	}
 
 	public boolean getBooleanValue(int index) {
-		return this.values[index].getBooleanValue();
+		return getLongValue(index) != 0;
 	}
 
+	/**
+	 * Creates a number wrapper for each value, prefer the primitive getters.
+	 *
+	 * @return new numbers containing the values
+	 * @see #getValue(int)
+	 */
 	public TypedNumber[] getValues() {
+		TypedNumber[] values = new TypedNumber[length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getValue(i);
+		}
+
 		return values;
 	}
 
+	/**
+	 * Returns a little endian view of the packed values. Writing in the view
+	 * modifies the array.
+	 *
+	 * @return a view of the values, starting at position 0
+	 */
+	public ByteBuffer getBuffer() {
+		return values.duplicate().clear().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
 	public long[] getLongValues() {
-		long[] values = new long[this.values.length];
-		for (int i = 0; i < values.length; i++) {
-			values[i] = getLongValue(i);
+		long[] values = new long[length];
+		if (getByteSize() == 8) {
+			this.values.asLongBuffer().get(values);
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getLongValue(i);
+			}
 		}
 
 		return values;
 	}
 
 	public int[] getIntValues() {
-		int[] values = new int[this.values.length];
-		for (int i = 0; i < values.length; i++) {
-			values[i] = getIntValue(i);
+		int[] values = new int[length];
+		if (getByteSize() == 4) {
+			this.values.asIntBuffer().get(values);
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getIntValue(i);
+			}
 		}
 
 		return values;
 	}
 
 	public short[] getShortValues() {
-		short[] values = new short[this.values.length];
-		for (int i = 0; i < values.length; i++) {
-			values[i] = getShortValue(i);
+		short[] values = new short[length];
+		if (getByteSize() == 2) {
+			this.values.asShortBuffer().get(values);
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getShortValue(i);
+			}
 		}
 
 		return values;
 	}
 
 	public char[] getCharValues() {
-		char[] values = new char[this.values.length];
+		char[] values = new char[length];
 		for (int i = 0; i < values.length; i++) {
 			values[i] = getCharValue(i);
 		}
@@ -219,16 +328,20 @@ public class TypedArray extends TypedVariable {
 	}
 
 	public byte[] getByteValues() {
-		byte[] values = new byte[this.values.length];
-		for (int i = 0; i < values.length; i++) {
-			values[i] = getByteValue(i);
+		byte[] values = new byte[length];
+		if (getByteSize() == 1) {
+			this.values.get(0, values);
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getByteValue(i);
+			}
 		}
 
 		return values;
 	}
 
 	public float[] getFloatValues() {
-		float[] values = new float[this.values.length];
+		float[] values = new float[length];
 		for (int i = 0; i < values.length; i++) {
 			values[i] = getFloatValue(i);
 		}
@@ -237,7 +350,7 @@ public class TypedArray extends TypedVariable {
 	}
 
 	public double[] getDoubleValues() {
-		double[] values = new double[this.values.length];
+		double[] values = new double[length];
 		for (int i = 0; i < values.length; i++) {
 			values[i] = getDoubleValue(i);
 		}
@@ -246,7 +359,7 @@ public class TypedArray extends TypedVariable {
 	}
 
 	public boolean[] getBooleanValues() {
-		boolean[] values = new boolean[this.values.length];
+		boolean[] values = new boolean[length];
 		for (int i = 0; i < values.length; i++) {
 			values[i] = getBooleanValue(i);
 		}
@@ -259,7 +372,7 @@ public class TypedArray extends TypedVariable {
 	}
 
 	public int length() {
-		return this.values.length;
+		return length;
 	}
 
 	@Override
@@ -60,7 +60,6 @@ public class ArchiveDirDialog extends JDialog {
 		// Compression method
 		c.gridx = 0;
 		c.gridy = 1;
-		// TODO Use compression
 		JLabel compressionMethodLabel = new JLabel("Compression method");
 		JComboBox<CompressionMethodEnum> compressionMethod = new JComboBox<CompressionMethodEnum>(
 				CompressionMethodEnum.values());
@@ -94,9 +93,10 @@ public class ArchiveDirDialog extends JDialog {
 				archiveFile.delete();
 			}
 
-			NARC narc = new NARC(archivePath.toFile(), doWriteSubtables.isSelected());
 			try {
 				// Create archive
+				NARC narc = new NARC(archivePath.toFile(), doWriteSubtables.isSelected(),
+						(CompressionMethodEnum) compressionMethod.getSelectedItem());
 				narc.createArchive();
 
 				// TODO Delete folder
@@ -1,91 +1,132 @@
 package pokemon.logic;
 
 import java.awt.Color;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
 
 import pokemon.files.graphics.GraphicResources.ColorBitDepth;
 
+/**
+ * Colors are stored as ARGB ints, 16 palettes of 16 colors one after the other.
+ * With 8 bits depth, the color index is directly the index in the array.
+ */
 public class Palette {
 
 	public static final int PALETTE_SIZE = 16;
 	public static final int COLOR_PER_4BITS_PALETTE = 0x10;
 	public static final int COLOR_PER_8BITS_PALETTE = 0x200;
 	public static final int MAX_PALETTE_NUMBER = 16;
-	
+	public static final int MAX_COLOR_NUMBER = MAX_PALETTE_NUMBER * PALETTE_SIZE;
+
 	public static final Palette DEFAULT_PALETTE = new Palette();
-	
+
 	private int bitDepth;
 	private int colorNumber;
 	private int paletteNumber;
-	private Color[][] palettes;
+	private int[] colors;
 
 	private Palette() {
 		this.bitDepth = ColorBitDepth.FOUR_BIT_DEPTH.getBitDepthValue();
 		this.colorNumber = COLOR_PER_8BITS_PALETTE;
-		this.palettes = new Color[MAX_PALETTE_NUMBER][PALETTE_SIZE];
-		for (Color[] row : palettes) {
-			for (int i = 0; i < row.length; i++) {
-				row[i] = Color.black;
-			}
-		}
+		this.colors = new int[MAX_COLOR_NUMBER];
+		Arrays.fill(colors, Color.black.getRGB());
 	}
-	
-	public Palette(int bitDepth, Color[] colors) {
+
+	/**
+	 * @param bitDepth the bit depth value
+	 * @param colors   the ARGB colors, only the first 256 are used
+	 */
+	public Palette(int bitDepth, int[] colors) {
 		this();
 		this.bitDepth = bitDepth;
-		
+
 		if (bitDepth == ColorBitDepth.EIGHT_BIT_DEPTH.getBitDepthValue()) {
 			paletteNumber = 1;
 		} else {
 			// Get number of palettes to create palette array
 			paletteNumber = colors.length >> 4;
 		}
-		
+
 		colorNumber = colors.length;
-		for (int palette = 0; palette < MAX_PALETTE_NUMBER; palette++) {
-			for (int colorIndex = 0; colorIndex < PALETTE_SIZE; colorIndex++) {
-				palettes[palette][colorIndex] = colors[palette * PALETTE_SIZE + colorIndex];
-			}
-		}
+		System.arraycopy(colors, 0, this.colors, 0, Math.min(colors.length, MAX_COLOR_NUMBER));
+	}
 
+	public Palette(int bitDepth, Color[] colors) {
+		this(bitDepth, Arrays.stream(colors).mapToInt(Color::getRGB).toArray());
 	}
 
-	public Color[][] getPalettes() {
-		return this.palettes;
+	/**
+	 * @return the ARGB colors of all palettes, 16 colors per palette. Not a copy!
+	 */
+	public int[] getColors() {
+		return this.colors;
 	}
-	
+
+	/**
+	 * Same as {@link #getColors()} but the first 16 colors are the ones of the
+	 * selected palette, so 4 bits pixels directly index the right colors
+	 *
+	 * @param selectedPalette the palette to put first
+	 * @return a new color map of 256 ARGB colors
+	 */
+	public int[] getColorMap(int selectedPalette) {
+		int[] colorMap = colors.clone();
+		System.arraycopy(colors, selectedPalette * PALETTE_SIZE, colorMap, 0, PALETTE_SIZE);
+		return colorMap;
+	}
+
+	/**
+	 * @param selectedPalette the palette used by 4 bits pixels, see
+	 *                        {@link #getColorMap(int)}
+	 * @return a color model for images with one byte per pixel
+	 */
+	public IndexColorModel createIndexColorModel(int selectedPalette) {
+		return new IndexColorModel(8, MAX_COLOR_NUMBER, getColorMap(selectedPalette), 0, false, -1,
+				DataBuffer.TYPE_BYTE);
+	}
+
 	public int getColorPerPalette() {
 		return COLOR_PER_4BITS_PALETTE;
 	}
-	
+
 	public int getPaletteNumber() {
 		return paletteNumber;
 	}
-	
+
 	public void setPaletteNumber(int paletteNumber) {
 		this.paletteNumber = paletteNumber;
 	}
 
+	public int getARGB(int paletteNumber, int colorIndex) {
+		return this.colors[paletteNumber * PALETTE_SIZE + colorIndex];
+	}
+
+	public int getARGB(int colorIndex) {
+		return this.colors[colorIndex];
+	}
+
 	public Color getColorInPalette(int paletteNumber, int colorIndex) {
-		return this.palettes[paletteNumber][colorIndex];
+		return new Color(getARGB(paletteNumber, colorIndex));
 	}
-	
+
 	public Color getColorInPalette(int colorIndex) {
-		return getColorInPalette(colorIndex >> 4, colorIndex & 0b1111);
+		return new Color(getARGB(colorIndex));
 	}
-	
+
 	public void setColorInPalette(int paletteNumber, int colorIndex, Color color) {
-		this.palettes[paletteNumber][colorIndex] = color;
+		this.colors[paletteNumber * PALETTE_SIZE + colorIndex] = color.getRGB();
 	}
 
 	/**
 	 * Identical to {@link #setColorInPalette(int, int, Color)} but more useful when
 	 * you have 8-bit depth
-	 * 
+	 *
 	 * @param colorIndex Color index in palette
 	 * @param color      Color to set
 	 */
 	public void setColorInPalette(int colorIndex, Color color) {
-		setColorInPalette(colorIndex >> 4, colorIndex & 0b1111, color);
+		this.colors[colorIndex] = color.getRGB();
 	}
 
 	public int getBitDepth() {
@@ -25,6 +25,13 @@ public class ScreenData {
 
 	}
 
+	/**
+	 * @return the screen data back in the YYYYXXNNNNNNNNNN format
+	 */
+	public int getData() {
+		return (paletteNumber << 12) | (yFlip ? 1 << 11 : 0) | (xFlip ? 1 << 10 : 0) | tileNumber;
+	}
+
 	public Color[] processTile(Tile[] tiles, Palette palette) {
 		Color[] colors = new Color[Tile.TILE_SIZE * Tile.TILE_SIZE];
 		if (tileNumber >= tiles.length) {
@@ -35,20 +42,19 @@ public class ScreenData {
 			Tile tile = tiles[tileNumber];
 			int[][] tileData = tile.getTileData();
 
-			// Process tile flips
+			// Process tile flips, line by line (tile data is indexed by x first)
 			int[] processedData = new int[Tile.TILE_SIZE * Tile.TILE_SIZE];
-			for (int i = 0; i < Tile.TILE_SIZE; i++) {
-				for (int j = 0; j < Tile.TILE_SIZE; j++) {
-					int xIndex = xFlip ? Tile.TILE_SIZE - i - 1 : i;
-					int yIndex = yFlip ? Tile.TILE_SIZE - j - 1 : j;
-					processedData[i * Tile.TILE_SIZE + j] = tileData[yIndex][xIndex];
+			for (int y = 0; y < Tile.TILE_SIZE; y++) {
+				for (int x = 0; x < Tile.TILE_SIZE; x++) {
+					int xIndex = xFlip ? Tile.TILE_SIZE - x - 1 : x;
+					int yIndex = yFlip ? Tile.TILE_SIZE - y - 1 : y;
+					processedData[y * Tile.TILE_SIZE + x] = tileData[xIndex][yIndex];
 				}
 			}
 
 			// Get colors
-			Color[] selectedPalette = palette.getPalettes()[paletteNumber];
 			for (int i = 0; i < processedData.length; i++) {
-				colors[i] = selectedPalette[processedData[i]];
+				colors[i] = palette.getColorInPalette(paletteNumber, processedData[i]);
 			}
 		}
 		return colors;
@@ -0,0 +1,241 @@
+package pokemon.logic;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Screen entries of a NSCR, kept packed as they are stored in the file. Each
+ * entry has the YYYYXXNNNNNNNNNN format (see {@link ScreenData}), the static
+ * methods decode and encode single entries so that nothing is allocated per
+ * cell.
+ * </p>
+ *
+ * <p>
+ * Bulk operations work directly on the packed array, rectangles are given in
+ * cells and must be inside the map.
+ * </p>
+ */
+public class ScreenMap {
+
+	public static final int TILE_MASK = 0x3FF;
+	public static final int MAX_TILE_NUMBER = TILE_MASK + 1;
+	public static final int MAX_PALETTE_NUMBER = 16;
+
+	private static final int H_FLIP_MASK = 1 << 10;
+	private static final int V_FLIP_MASK = 1 << 11;
+	private static final int PALETTE_SHIFT = 12;
+
+	private short[] entries;
+	private int width;
+	private int height;
+
+	public ScreenMap(int width, int height) {
+		this(width, height, new short[width * height]);
+	}
+
+	public ScreenMap(int width, int height, short[] entries) {
+		this.width = width;
+		this.height = height;
+		this.entries = entries;
+	}
+
+	public static int getTileNumber(int entry) {
+		return entry & TILE_MASK;
+	}
+
+	public static boolean isHFlip(int entry) {
+		return (entry & H_FLIP_MASK) != 0;
+	}
+
+	public static boolean isVFlip(int entry) {
+		return (entry & V_FLIP_MASK) != 0;
+	}
+
+	public static int getPaletteNumber(int entry) {
+		return (entry & 0xFFFF) >>> PALETTE_SHIFT;
+	}
+
+	public static short createEntry(int tileNumber, boolean hFlip, boolean vFlip, int paletteNumber) {
+		return (short) ((paletteNumber << PALETTE_SHIFT) | (vFlip ? V_FLIP_MASK : 0) | (hFlip ? H_FLIP_MASK : 0)
+				| (tileNumber & TILE_MASK));
+	}
+
+	public static short setTileNumber(int entry, int tileNumber) {
+		return (short) ((entry & ~TILE_MASK) | (tileNumber & TILE_MASK));
+	}
+
+	public static short setPaletteNumber(int entry, int paletteNumber) {
+		return (short) ((entry & ~(0xF << PALETTE_SHIFT)) | (paletteNumber << PALETTE_SHIFT));
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int length() {
+		return entries.length;
+	}
+
+	/**
+	 * @return the packed entries, line by line. Not a copy!
+	 */
+	public short[] getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return the entry at this index, as an unsigned value
+	 */
+	public int getEntry(int index) {
+		return entries[index] & 0xFFFF;
+	}
+
+	public int getEntry(int x, int y) {
+		return getEntry(y * width + x);
+	}
+
+	public void setEntry(int index, int entry) {
+		entries[index] = (short) entry;
+	}
+
+	public void setEntry(int x, int y, int entry) {
+		setEntry(y * width + x, entry);
+	}
+
+	/**
+	 * Fills a rectangle with the same entry
+	 */
+	public void fill(int x, int y, int regionWidth, int regionHeight, int entry) {
+		for (int line = y; line < y + regionHeight; line++) {
+			int start = line * width + x;
+			Arrays.fill(entries, start, start + regionWidth, (short) entry);
+		}
+	}
+
+	/**
+	 * Copies a rectangle of this map to another place of this map, the two
+	 * rectangles may overlap.
+	 */
+	public void copyRegion(int srcX, int srcY, int regionWidth, int regionHeight, int destX, int destY) {
+		copyRegion(this, srcX, srcY, regionWidth, regionHeight, destX, destY);
+	}
+
+	/**
+	 * Copies a rectangle of another map (or this one) to this map.
+	 */
+	public void copyRegion(ScreenMap source, int srcX, int srcY, int regionWidth, int regionHeight, int destX,
+			int destY) {
+		// Copy lines backwards when moving down in the same map, else lines not copied
+		// yet would be overwritten
+		if (source == this && destY > srcY) {
+			for (int line = regionHeight - 1; line >= 0; line--) {
+				System.arraycopy(entries, (srcY + line) * width + srcX, entries, (destY + line) * width + destX,
+						regionWidth);
+			}
+		} else {
+			for (int line = 0; line < regionHeight; line++) {
+				System.arraycopy(source.entries, (srcY + line) * source.width + srcX, entries,
+						(destY + line) * width + destX, regionWidth);
+			}
+		}
+	}
+
+	/**
+	 * Changes the palette of every entry with a table, entries using palette p get
+	 * palette paletteMap[p].
+	 *
+	 * @param paletteMap new palette number of each palette, 16 values
+	 */
+	public void remapPalettes(int[] paletteMap) {
+		// 16 possible values, compute the 4 bits directly
+		int[] shiftedMap = new int[MAX_PALETTE_NUMBER];
+		for (int palette = 0; palette < MAX_PALETTE_NUMBER; palette++) {
+			shiftedMap[palette] = (paletteMap[palette] & 0xF) << PALETTE_SHIFT;
+		}
+
+		int lowBits = (1 << PALETTE_SHIFT) - 1;
+		for (int i = 0; i < entries.length; i++) {
+			int entry = entries[i] & 0xFFFF;
+			entries[i] = (short) (shiftedMap[entry >>> PALETTE_SHIFT] | (entry & lowBits));
+		}
+	}
+
+	/**
+	 * Replaces a palette number by another one.
+	 */
+	public void remapPalette(int oldPaletteNumber, int newPaletteNumber) {
+		int[] paletteMap = new int[MAX_PALETTE_NUMBER];
+		for (int palette = 0; palette < MAX_PALETTE_NUMBER; palette++) {
+			paletteMap[palette] = palette;
+		}
+		paletteMap[oldPaletteNumber] = newPaletteNumber;
+
+		remapPalettes(paletteMap);
+	}
+
+	/**
+	 * Changes the tile of every entry with a table, entries using tile t get tile
+	 * tileMap[t]. Flips and palettes are kept.
+	 *
+	 * @param tileMap new tile number of each tile, at most 1024 values. Tiles
+	 *                after the end of the table are not changed
+	 */
+	public void remapTiles(int[] tileMap) {
+		for (int i = 0; i < entries.length; i++) {
+			int entry = entries[i];
+			int tileNumber = entry & TILE_MASK;
+			if (tileNumber < tileMap.length) {
+				entries[i] = (short) ((entry & ~TILE_MASK) | (tileMap[tileNumber] & TILE_MASK));
+			}
+		}
+	}
+
+	/**
+	 * Adds an offset to every tile number, useful when tiles are moved in the
+	 * tile sheet.
+	 */
+	public void offsetTiles(int offset) {
+		for (int i = 0; i < entries.length; i++) {
+			int entry = entries[i];
+			entries[i] = (short) ((entry & ~TILE_MASK) | ((entry + offset) & TILE_MASK));
+		}
+	}
+
+	/**
+	 * Same as {@link ScreenData#processTile(Tile[], Palette)} for one cell, but
+	 * nothing is allocated.
+	 *
+	 * @param index  the cell to render
+	 * @param tiles  the tile sheet used by the map
+	 * @param colors the ARGB colors of each palette, 16 colors per palette
+	 * @param pixels the 64 pixels of the tile, line by line
+	 */
+	public void processTile(int index, TileSheet tiles, int[] colors, int[] pixels) {
+		int entry = getEntry(index);
+		int tileNumber = getTileNumber(entry);
+		if (tileNumber >= tiles.getTileNumber()) {
+			Arrays.fill(pixels, 0, Tile.TILE_SIZE * Tile.TILE_SIZE, 0xFF000000);
+			return;
+		}
+
+		boolean hFlip = isHFlip(entry);
+		boolean vFlip = isVFlip(entry);
+		int paletteOffset = getPaletteNumber(entry) * Palette.PALETTE_SIZE;
+		byte[] tilePixels = tiles.getPixels();
+		int tileOffset = TileSheet.getOffset(tileNumber);
+		for (int y = 0; y < Tile.TILE_SIZE; y++) {
+			int tileLine = tileOffset + (vFlip ? Tile.TILE_SIZE - y - 1 : y) * Tile.TILE_SIZE;
+			for (int x = 0; x < Tile.TILE_SIZE; x++) {
+				int colorIndex = tilePixels[tileLine + (hFlip ? Tile.TILE_SIZE - x - 1 : x)] & 0xFF;
+				// 8 bits depth indexes go over the palette
+				pixels[y * Tile.TILE_SIZE + x] = colorIndex < Palette.PALETTE_SIZE ? colors[paletteOffset + colorIndex]
+						: colors[colorIndex];
+			}
+		}
+	}
+
+}
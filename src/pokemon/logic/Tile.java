@@ -1,42 +1,62 @@
 package pokemon.logic;
 
+/**
+ * A tile of a {@link TileSheet}, pixels are stored in the sheet
+ */
 public class Tile {
 
 	public static final int TILE_SIZE = 8;
-	public static final Tile[] DEFAULT_TILES = new Tile[0];
-	
-	private int[][] tileData;
-	
+
+	private TileSheet sheet;
+	private int tileIndex;
+
 	public Tile() {
-		// Inits at 0
-		this.tileData = new int[TILE_SIZE][TILE_SIZE];
+		// Inits at 0, in its own sheet
+		this(new TileSheet(1), 0);
 	}
-	
+
 	public Tile(int[] tileData) {
 		this();
-		
-		// Filling the data
-		int x = 0;
-		int y = 0;
-		for (int paletteIndex : tileData) {
-			this.tileData[x][y] = paletteIndex;
-			
-			if (++x == TILE_SIZE) {
-				x = 0;
-				y += 1;
-			}
+
+		// Filling the data, line by line
+		byte[] pixels = sheet.getPixels();
+		for (int i = 0; i < Math.min(tileData.length, TileSheet.PIXELS_PER_TILE); i++) {
+			pixels[i] = (byte) tileData[i];
 		}
 	}
-	
+
+	public Tile(TileSheet sheet, int tileIndex) {
+		this.sheet = sheet;
+		this.tileIndex = tileIndex;
+	}
+
 	public int getData(int x, int y) {
-		return tileData[x][y];
+		return sheet.getPixel(tileIndex, x, y);
 	}
-	
+
 	public void setData(int x, int y, int paletteIndex) {
-		tileData[x][y] = paletteIndex;
+		sheet.setPixel(tileIndex, x, y, paletteIndex);
 	}
-	
+
+	/**
+	 * @return a copy of the pixels, indexed by x then y
+	 */
 	public int[][] getTileData() {
+		int[][] tileData = new int[TILE_SIZE][TILE_SIZE];
+		for (int x = 0; x < TILE_SIZE; x++) {
+			for (int y = 0; y < TILE_SIZE; y++) {
+				tileData[x][y] = getData(x, y);
+			}
+		}
+
 		return tileData;
 	}
+
+	public TileSheet getSheet() {
+		return sheet;
+	}
+
+	public int getTileIndex() {
+		return tileIndex;
+	}
 }
@@ -0,0 +1,142 @@
+package pokemon.logic;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * All the tiles of a tile file in one contiguous array, one byte per pixel.
+ * Tiles follow each other and each tile is stored line by line, so pixel (x, y)
+ * of tile t is at t * 64 + y * 8 + x. This is the order of tiled RAHC data,
+ * see {@link pokemon.files.graphics.TileCodec}.
+ * </p>
+ *
+ * <p>
+ * {@link Tile} objects are only views on a tile of a sheet, prefer working on
+ * the sheet for bulk operations.
+ * </p>
+ */
+public class TileSheet {
+
+	public static final int PIXELS_PER_TILE = Tile.TILE_SIZE * Tile.TILE_SIZE;
+	public static final TileSheet DEFAULT_SHEET = new TileSheet(0);
+
+	private byte[] pixels;
+	private int tileNumber;
+
+	public TileSheet(int tileNumber) {
+		this(new byte[tileNumber * PIXELS_PER_TILE]);
+	}
+
+	/**
+	 * @param pixels palette index of each pixel, tile after tile. Not copied!
+	 */
+	public TileSheet(byte[] pixels) {
+		this.pixels = pixels;
+		this.tileNumber = pixels.length / PIXELS_PER_TILE;
+	}
+
+	public int getTileNumber() {
+		return tileNumber;
+	}
+
+	/**
+	 * @return the pixels of all tiles. Not a copy!
+	 */
+	public byte[] getPixels() {
+		return pixels;
+	}
+
+	public static int getOffset(int tileIndex) {
+		return tileIndex * PIXELS_PER_TILE;
+	}
+
+	public int getPixel(int tileIndex, int x, int y) {
+		return pixels[getOffset(tileIndex) + y * Tile.TILE_SIZE + x] & 0xFF;
+	}
+
+	public void setPixel(int tileIndex, int x, int y, int paletteIndex) {
+		pixels[getOffset(tileIndex) + y * Tile.TILE_SIZE + x] = (byte) paletteIndex;
+	}
+
+	/**
+	 * @return a view on a tile of this sheet, modifying it modifies the sheet
+	 */
+	public Tile getTile(int tileIndex) {
+		return new Tile(this, tileIndex);
+	}
+
+	/**
+	 * Changes the number of tiles, new tiles are empty. Views stay valid.
+	 */
+	public void setTileNumber(int tileNumber) {
+		if (tileNumber * PIXELS_PER_TILE > pixels.length) {
+			pixels = Arrays.copyOf(pixels, tileNumber * PIXELS_PER_TILE);
+		}
+		this.tileNumber = tileNumber;
+	}
+
+	/**
+	 * Copies a line of pixels of a tile, useful to render tiles in an image
+	 *
+	 * @param tileIndex the tile to copy
+	 * @param y         the line of the tile
+	 * @param dest      the destination array
+	 * @param destIndex where to copy in the destination array
+	 */
+	public void copyLine(int tileIndex, int y, byte[] dest, int destIndex) {
+		System.arraycopy(pixels, getOffset(tileIndex) + y * Tile.TILE_SIZE, dest, destIndex, Tile.TILE_SIZE);
+	}
+
+	/**
+	 * Copies a tile in a 64 bytes array, flipped or not
+	 *
+	 * @param tileIndex  the tile to copy
+	 * @param hFlip      mirror columns
+	 * @param vFlip      mirror lines
+	 * @param dest       the destination array
+	 * @param destOffset where the tile starts in the destination array
+	 */
+	public void copyTile(int tileIndex, boolean hFlip, boolean vFlip, byte[] dest, int destOffset) {
+		copyFlipped(pixels, getOffset(tileIndex), dest, destOffset, hFlip, vFlip);
+	}
+
+	/**
+	 * Mirrors the columns of a tile
+	 */
+	public void flipHorizontal(int tileIndex) {
+		copyFlipped(pixels, getOffset(tileIndex), pixels, getOffset(tileIndex), true, false);
+	}
+
+	/**
+	 * Mirrors the lines of a tile
+	 */
+	public void flipVertical(int tileIndex) {
+		copyFlipped(pixels, getOffset(tileIndex), pixels, getOffset(tileIndex), false, true);
+	}
+
+	/**
+	 * Copies a 64 pixels tile, source and destination can be the same tile.
+	 */
+	public static void copyFlipped(byte[] src, int srcOffset, byte[] dest, int destOffset, boolean hFlip,
+			boolean vFlip) {
+		// Goes through a temporary tile when flipping in place
+		byte[] tile = src == dest ? new byte[PIXELS_PER_TILE] : dest;
+		int tileOffset = src == dest ? 0 : destOffset;
+		for (int y = 0; y < Tile.TILE_SIZE; y++) {
+			int srcLine = srcOffset + (vFlip ? Tile.TILE_SIZE - y - 1 : y) * Tile.TILE_SIZE;
+			int destLine = tileOffset + y * Tile.TILE_SIZE;
+			if (hFlip) {
+				for (int x = 0; x < Tile.TILE_SIZE; x++) {
+					tile[destLine + x] = src[srcLine + Tile.TILE_SIZE - x - 1];
+				}
+			} else {
+				System.arraycopy(src, srcLine, tile, destLine, Tile.TILE_SIZE);
+			}
+		}
+
+		if (tile != dest) {
+			System.arraycopy(tile, 0, dest, destOffset, PIXELS_PER_TILE);
+		}
+	}
+
+}
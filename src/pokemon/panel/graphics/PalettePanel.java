@@ -4,6 +4,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -13,7 +14,6 @@ import javax.swing.JColorChooser;
 import javax.swing.JPanel;
 
 import pokemon.event.Event;
-import pokemon.event.EventListener;
 import pokemon.event.EventManager;
 import pokemon.event.palette.PaletteColorModifiedEvent;
 import pokemon.logic.Palette;
@@ -28,11 +28,13 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 	private static final int COLOR_SIZE = 20;
 	private static final int OFFSET = 1;
 
+	private String paletteName;
 	private Palette palette;
 	private int pointedX;
 	private int pointedY;
 
-	public PalettePanel(Palette palette) {
+	public PalettePanel(String paletteName, Palette palette) {
+		this.paletteName = paletteName;
 		this.palette = palette;
 		this.pointedX = -1;
 		this.pointedY = -1;
@@ -42,8 +44,36 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 		this.setMaximumSize(this.getPreferredSize());
 		this.addMouseListener(this);
 		this.addMouseMotionListener(this);
-		
-		EventManager.getInstance().registerListener(this);
+	}
+
+	private Rectangle getHighlightBounds(int x, int y) {
+		if (x == -1 || y == -1) {
+			return null;
+		}
+
+		return new Rectangle(x, y, COLOR_SIZE + 2 * OFFSET + 1, COLOR_SIZE + 2 * OFFSET + 1);
+	}
+
+	private void moveHighlight(int x, int y) {
+		if (x == pointedX && y == pointedY) {
+			return;
+		}
+
+		// Only repaint where the highlight was and where it is now
+		Rectangle oldBounds = getHighlightBounds(pointedX, pointedY);
+		Rectangle newBounds = getHighlightBounds(x, y);
+		pointedX = x;
+		pointedY = y;
+
+		if (oldBounds == null) {
+			oldBounds = newBounds;
+		} else if (newBounds != null) {
+			oldBounds = oldBounds.union(newBounds);
+		}
+
+		if (oldBounds != null) {
+			repaint(oldBounds);
+		}
 	}
 
 	@Override
@@ -51,37 +81,33 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 		super.paintComponent(g);
 		Graphics2D g2d = (Graphics2D) g;
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		g2d.fillRect(0, 0, this.getWidth(), this.getHeight());
-
-		// Set 1 pixel of offset to have black borders
-		int x = OFFSET;
-		int y = OFFSET;
-		Color[][] colors = this.palette.getPalettes();
-		for (Color[] line : colors) {
-			for (Color color : line) {
-				g2d.setColor(color);
-				g2d.fillRect(x, y, COLOR_SIZE, COLOR_SIZE);
-				x += COLOR_SIZE + OFFSET;
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+		}
+		g2d.fill(clip);
+
+		// Set 1 pixel of offset to have black borders, only paint colors in the clip
+		int[] colors = this.palette.getColors();
+		int cellSize = COLOR_SIZE + OFFSET;
+		int firstLine = Math.max(0, clip.y / cellSize);
+		int lastLine = Math.min(Palette.MAX_PALETTE_NUMBER - 1, (clip.y + clip.height) / cellSize);
+		for (int line = firstLine; line <= lastLine; line++) {
+			int firstColumn = Math.max(0, clip.x / cellSize);
+			int lastColumn = Math.min(Palette.PALETTE_SIZE - 1, (clip.x + clip.width) / cellSize);
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				g2d.setColor(new Color(colors[line * Palette.PALETTE_SIZE + column]));
+				g2d.fillRect(OFFSET + column * cellSize, OFFSET + line * cellSize, COLOR_SIZE, COLOR_SIZE);
 			}
-
-			x = OFFSET;
-			y += COLOR_SIZE + OFFSET;
 		}
 
 		// Highlight rectangle
-		if (pointedX != -1 && pointedY != -1 && pointedX < (COLOR_SIZE + OFFSET) * 16
-				&& pointedY < (COLOR_SIZE + OFFSET) * 16) {
+		if (pointedX != -1 && pointedY != -1 && pointedX < cellSize * 16 && pointedY < cellSize * 16) {
 			g2d.setColor(Color.lightGray);
 			g2d.drawRect(pointedX, pointedY, COLOR_SIZE + 2 * OFFSET, COLOR_SIZE + 2 * OFFSET);
 		}
 	}
 
-	@EventListener
-	public void onPaletteColorChanged(PaletteColorModifiedEvent event) {
-		palette.setColorInPalette(event.getPaletteNumber(), event.getIndex(), event.getNewColor());
-		repaint();
-	}
-
 	@Override
 	public void mouseClicked(MouseEvent e) {
 		if (e.getClickCount() == 2) {
@@ -93,9 +119,14 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 				Color newColor = JColorChooser.showDialog(null, "Change color", oldColor);
 				
 				if (newColor != null) {
-					Event colorChangedEvent = new PaletteColorModifiedEvent(selectedPalette, selectedIndex, oldColor,
-							newColor);
-					EventManager.getInstance().throwEvent(colorChangedEvent);
+					// Applied before the event, so its listeners all see the new color
+					palette.setColorInPalette(selectedPalette, selectedIndex, newColor);
+					int cellSize = COLOR_SIZE + OFFSET;
+					repaint(selectedIndex * cellSize, selectedPalette * cellSize, cellSize + OFFSET, cellSize + OFFSET);
+
+					Event colorChangedEvent = new PaletteColorModifiedEvent(paletteName, selectedPalette,
+							selectedIndex, oldColor, newColor);
+					EventManager.getInstance().postEvent(colorChangedEvent);
 				}
 			}
 		}
@@ -115,9 +146,7 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 
 	@Override
 	public void mouseExited(MouseEvent e) {
-		pointedX = -1;
-		pointedY = -1;
-		repaint();
+		moveHighlight(-1, -1);
 	}
 
 	@Override
@@ -133,8 +162,7 @@ public class PalettePanel extends JPanel implements MouseListener, MouseMotionLi
 		// Highlight rectangles take the two offsets into account
 		// Do as if a rectangle had a size of COLOR_SIZE + OFFSET
 		// Rescale to beginning of rectangle
-		pointedX = (x / (COLOR_SIZE + OFFSET)) * (COLOR_SIZE + OFFSET);
-		pointedY = (y / (COLOR_SIZE + OFFSET)) * (COLOR_SIZE + OFFSET);
-		repaint();
+		moveHighlight((x / (COLOR_SIZE + OFFSET)) * (COLOR_SIZE + OFFSET),
+				(y / (COLOR_SIZE + OFFSET)) * (COLOR_SIZE + OFFSET));
 	}
 }
@@ -0,0 +1,181 @@
+package pokemon.panel.graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import pokemon.logic.Palette;
+import pokemon.logic.ScreenMap;
+import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
+
+/**
+ * <p>
+ * Renders a whole screen in one image. Each cell is copied from a cache of
+ * rendered tiles, keyed by the raw screen entry (tile number, flips and palette
+ * number), so a tile used many times with the same flips and palette is only
+ * rendered once.
+ * </p>
+ *
+ * <p>
+ * When a color or a tile changes, only the cache entries using it are dropped
+ * and only the cells using them are copied again. Cells are copied when the
+ * image is asked for, not when invalidated: invalidations come from event
+ * listeners, which can run before the palette or the tiles are changed.
+ * </p>
+ */
+public class ScreenCompositor {
+
+	private static final int PIXELS_PER_TILE = Tile.TILE_SIZE * Tile.TILE_SIZE;
+	private static final int ENTRY_NUMBER = 0x10000;
+
+	private ScreenMap screenMap;
+	private int screenWidth;
+	private int screenHeight;
+	private Palette palette;
+	private TileSheet tiles;
+
+	// Rendered tiles indexed by screen entry, null if not rendered yet
+	private int[][] tileCache;
+
+	private BufferedImage image;
+	private int[] pixels;
+	// Cells to copy again before the image is used
+	private boolean[] dirtyCells;
+	private boolean isDirty;
+
+	public ScreenCompositor(ScreenMap screenMap, Palette palette, TileSheet tiles) {
+		this.screenMap = screenMap;
+		this.screenWidth = screenMap.getWidth();
+		this.screenHeight = screenMap.getHeight();
+		this.palette = palette;
+		this.tiles = tiles;
+		this.tileCache = new int[ENTRY_NUMBER][];
+
+		this.image = new BufferedImage(Tile.TILE_SIZE * screenWidth, Tile.TILE_SIZE * screenHeight,
+				BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.dirtyCells = new boolean[getCellNumber()];
+
+		invalidateAll();
+	}
+
+	/**
+	 * @return the screen, with the invalidated cells copied again
+	 */
+	public BufferedImage getImage() {
+		if (isDirty) {
+			isDirty = false;
+			for (int cell = 0; cell < dirtyCells.length; cell++) {
+				if (dirtyCells[cell]) {
+					dirtyCells[cell] = false;
+					compositeCell(cell);
+				}
+			}
+		}
+
+		return image;
+	}
+
+	public void setPalette(Palette palette) {
+		this.palette = palette;
+		invalidateAll();
+	}
+
+	public void setTiles(TileSheet tiles) {
+		this.tiles = tiles;
+		invalidateAll();
+	}
+
+	/**
+	 * A color of a palette changed, cells using this palette are rendered again.
+	 *
+	 * @param paletteNumber the number of the modified palette
+	 */
+	public void invalidatePalette(int paletteNumber) {
+		// With 8 bits depth, every cell can use any color...
+		if (palette.getBitDepth() == 8) {
+			invalidateAll();
+			return;
+		}
+
+		for (int entry = 0; entry < ENTRY_NUMBER; entry++) {
+			if (ScreenMap.getPaletteNumber(entry) == paletteNumber) {
+				tileCache[entry] = null;
+			}
+		}
+
+		for (int cell = 0; cell < getCellNumber(); cell++) {
+			if (ScreenMap.getPaletteNumber(screenMap.getEntry(cell)) == paletteNumber) {
+				invalidateCell(cell);
+			}
+		}
+	}
+
+	/**
+	 * A tile changed, cells using this tile are rendered again.
+	 *
+	 * @param tileNumber the number of the modified tile
+	 */
+	public void invalidateTile(int tileNumber) {
+		// Same tile with any flip and any palette
+		for (int entry = tileNumber; entry < ENTRY_NUMBER; entry += ScreenMap.MAX_TILE_NUMBER) {
+			tileCache[entry] = null;
+		}
+
+		for (int cell = 0; cell < getCellNumber(); cell++) {
+			if (ScreenMap.getTileNumber(screenMap.getEntry(cell)) == tileNumber) {
+				invalidateCell(cell);
+			}
+		}
+	}
+
+	/**
+	 * Cells of the screen map changed, copies them again from the cache.
+	 */
+	public void invalidateRegion(int x, int y, int regionWidth, int regionHeight) {
+		for (int line = y; line < y + regionHeight; line++) {
+			for (int column = x; column < x + regionWidth; column++) {
+				invalidateCell(line * screenWidth + column);
+			}
+		}
+	}
+
+	private int getCellNumber() {
+		return Math.min(screenMap.length(), screenWidth * screenHeight);
+	}
+
+	private void invalidateAll() {
+		this.tileCache = new int[ENTRY_NUMBER][];
+		for (int cell = 0; cell < dirtyCells.length; cell++) {
+			invalidateCell(cell);
+		}
+	}
+
+	private void invalidateCell(int cell) {
+		dirtyCells[cell] = true;
+		isDirty = true;
+	}
+
+	private void compositeCell(int cell) {
+		int[] tilePixels = getRenderedTile(cell);
+		int imageWidth = image.getWidth();
+		int baseIndex = (cell / screenWidth) * Tile.TILE_SIZE * imageWidth + (cell % screenWidth) * Tile.TILE_SIZE;
+
+		for (int y = 0; y < Tile.TILE_SIZE; y++) {
+			System.arraycopy(tilePixels, y * Tile.TILE_SIZE, pixels, baseIndex + y * imageWidth, Tile.TILE_SIZE);
+		}
+	}
+
+	private int[] getRenderedTile(int cell) {
+		int entry = screenMap.getEntry(cell);
+		int[] tilePixels = tileCache[entry];
+		if (tilePixels == null) {
+			tilePixels = new int[PIXELS_PER_TILE];
+			screenMap.processTile(cell, tiles, palette.getColors(), tilePixels);
+			tileCache[entry] = tilePixels;
+		}
+
+		return tilePixels;
+	}
+
+}
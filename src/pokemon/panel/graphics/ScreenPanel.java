@@ -1,18 +1,22 @@
 package pokemon.panel.graphics;
 
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 import javax.swing.JPanel;
 
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
+import pokemon.event.palette.PaletteColorModifiedEvent;
 import pokemon.event.palette.PaletteSelectedEvent;
+import pokemon.event.tile.TilePixelModifiedEvent;
 import pokemon.logic.Palette;
-import pokemon.logic.ScreenData;
+import pokemon.logic.ScreenMap;
 import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
 import pokemon.panel.ui.EditionPanel;
 
 public class ScreenPanel extends JPanel {
@@ -23,22 +27,23 @@ public class ScreenPanel extends JPanel {
 	private static final long serialVersionUID = -1003657286801521283L;
 
 	private EditionPanel editionPanel;
-	private ScreenData[] screenData;
-	private Palette palette;
-	private Tile[] tiles;
+	private ScreenCompositor compositor;
+	private TileSheet tiles;
+	// Null for the default tiles
+	private String tilesName;
 	private int screenWidth;
 	private int screenHeight;
 
 	private int zoom;
 
-	public ScreenPanel(EditionPanel editionPanel, ScreenData[] screenData, Palette palette, Tile[] tiles,
-			int screenWidth, int screenHeight) {
+	public ScreenPanel(EditionPanel editionPanel, ScreenMap screenMap, Palette palette, TileSheet tiles,
+			String tilesName) {
 		this.editionPanel = editionPanel;
-		this.screenData = screenData;
-		this.palette = palette;
+		this.compositor = new ScreenCompositor(screenMap, palette, tiles);
 		this.tiles = tiles;
-		this.screenWidth = screenWidth;
-		this.screenHeight = screenHeight;
+		this.tilesName = tilesName;
+		this.screenWidth = screenMap.getWidth();
+		this.screenHeight = screenMap.getHeight();
 
 		this.zoom = 3;
 		this.setPreferredSize(new Dimension(8 * screenWidth * zoom, 8 * screenHeight * zoom));
@@ -50,36 +55,42 @@ public class ScreenPanel extends JPanel {
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		Graphics2D g2d = (Graphics2D) g;
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+		}
 
-		// Draw screen data (will never go oob)
-		int screenIndex = 0;
-		for (int y = 0; y < screenHeight; y++) {
-			for (int x = 0; x < screenWidth; x++) {
-				ScreenData data = screenData[screenIndex++];
-				int baseX = x * Tile.TILE_SIZE * zoom;
-				int baseY = y * Tile.TILE_SIZE * zoom;
-
-				Color[] colors = data.processTile(tiles, palette);
-				int xIndex = 0;
-				int yIndex = 0;
-				for (Color color : colors) {
-					g2d.setColor(color);
-					g2d.fillRect(baseX + xIndex * zoom, baseY + yIndex * zoom, zoom, zoom);
-
-					// x goes back to 0 when one line is over
-					if (++xIndex == Tile.TILE_SIZE) {
-						xIndex = 0;
-						yIndex++;
-					}
-				}
-			}
+		// Screen is already composited, only scale the screen pixels in the clip
+		int screenPixelWidth = Tile.TILE_SIZE * screenWidth;
+		int screenPixelHeight = Tile.TILE_SIZE * screenHeight;
+		int firstX = Math.max(0, clip.x / zoom);
+		int firstY = Math.max(0, clip.y / zoom);
+		int lastX = Math.min(screenPixelWidth, (clip.x + clip.width + zoom - 1) / zoom);
+		int lastY = Math.min(screenPixelHeight, (clip.y + clip.height + zoom - 1) / zoom);
+		if (firstX < lastX && firstY < lastY) {
+			g2d.drawImage(compositor.getImage(), firstX * zoom, firstY * zoom, lastX * zoom, lastY * zoom, firstX,
+					firstY, lastX, lastY, null);
 		}
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteSelected(PaletteSelectedEvent event) {
-		this.palette = editionPanel.getCurrentPalette();
+		compositor.setPalette(editionPanel.getCurrentPalette());
+		this.repaint();
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onPaletteColorChanged(PaletteColorModifiedEvent event) {
+		compositor.invalidatePalette(event.getPaletteNumber());
 		this.repaint();
 	}
 
+	@EventListener(thread = ListenerThread.EDT)
+	public void onTilePixelModified(TilePixelModifiedEvent event) {
+		if (event.getTileName().equals(tilesName) && event.getTileIndex() < tiles.getTileNumber()) {
+			compositor.invalidateTile(event.getTileIndex());
+			this.repaint();
+		}
+	}
+
 }
@@ -17,6 +17,7 @@ import javax.swing.JPanel;
 import pokemon.event.Event;
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
 import pokemon.event.palette.PaletteColorModifiedEvent;
 import pokemon.event.tile.TileEditSelectedEvent;
 import pokemon.event.tile.TilePixelModifiedEvent;
@@ -34,6 +35,8 @@ public class TileEditionPanel extends JPanel implements MouseListener, MouseMoti
 	private Palette palette;
 	private int selectedPalette;
 
+	// Tiles of the selected tile, edits only go to them
+	private String tileName;
 	private int selectedTile;
 	private int[][] tileData;
 
@@ -44,6 +47,7 @@ public class TileEditionPanel extends JPanel implements MouseListener, MouseMoti
 		this.palette = palette;
 		this.selectedPalette = selectedPalette;
 
+		this.tileName = null;
 		this.selectedTile = -1;
 		this.tileData = null;
 
@@ -73,11 +77,9 @@ public class TileEditionPanel extends JPanel implements MouseListener, MouseMoti
 
 		// Draw pixels
 		if (selectedTile != -1) {
-			Color[] colors = palette.getPalettes()[selectedPalette];
-
 			for (int x = 0; x < PIXEL_NUMBER; x++) {
 				for (int y = 0; y < PIXEL_NUMBER; y++) {
-					Color color = colors[tileData[x][y]];
+					Color color = palette.getColorInPalette(selectedPalette, tileData[x][y]);
 					g2d.setColor(color);
 					g2d.fillRect(x * PIXEL_SIZE, y * PIXEL_SIZE, PIXEL_SIZE, PIXEL_SIZE);
 
@@ -110,13 +112,14 @@ public class TileEditionPanel extends JPanel implements MouseListener, MouseMoti
 
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteColorChanged(PaletteColorModifiedEvent event) {
 		repaint();
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onSelectedTile(TileEditSelectedEvent event) {
+		tileName = event.getTileName();
 		selectedTile = event.getTileIndex();
 		tileData = event.getTileData();
 		repaint();
@@ -145,11 +148,11 @@ public class TileEditionPanel extends JPanel implements MouseListener, MouseMoti
 					return;
 				}
 
-				if (newIndex >= palette.getPalettes()[selectedPalette].length) {
+				if (newIndex < 0 || newIndex >= Palette.PALETTE_SIZE) {
 					JOptionPane.showMessageDialog(null, "The index must be a valid index within the palette", "Error!",
 							JOptionPane.ERROR_MESSAGE);
 				} else {
-					Event pixelModifiedEvent = new TilePixelModifiedEvent(selectedTile, xSelectedPixel, ySelectedPixel,
+					Event pixelModifiedEvent = new TilePixelModifiedEvent(tileName, selectedTile, xSelectedPixel, ySelectedPixel,
 							oldIndex, newIndex);
 					EventManager.getInstance().throwEvent(pixelModifiedEvent);
 					repaint();
@@ -5,20 +5,28 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
 
 import javax.swing.JPanel;
 
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
 import pokemon.event.palette.PaletteColorModifiedEvent;
 import pokemon.event.palette.PaletteSelectedEvent;
 import pokemon.event.tile.TilePixelModifiedEvent;
 import pokemon.event.ui.TilePropertiesChangedEvent;
 import pokemon.logic.Palette;
 import pokemon.logic.Tile;
+import pokemon.logic.TileSheet;
 import pokemon.panel.ui.EditionPanel;
 
 public class TilePanel extends JPanel implements MouseListener, MouseMotionListener {
@@ -27,10 +35,13 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 	 * 
 	 */
 	private static final long serialVersionUID = 1381704300700120039L;
+	private static final int COLOR_MODEL_SIZE = 256;
+	private static final BasicStroke SELECTION_STROKE = new BasicStroke(3);
+	private static final int SELECTION_MARGIN = 2;
 
 	private EditionPanel editionPanel;
 	private String tileName;
-	private Tile[] tiles;
+	private TileSheet tiles;
 	private Palette palette;
 
 	private int tilesX;
@@ -46,7 +57,13 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 	private int pointedX;
 	private int pointedY;
 
-	public TilePanel(EditionPanel editionPanel, String tileName, Tile[] tiles, int tileX, int tileY, Palette palette) {
+	// Palette indexes of all tiles, colors are only in the color model
+	private BufferedImage atlas;
+	private byte[] atlasData;
+	// One tile of grid, null when it must be drawn again
+	private BufferedImage gridTile;
+
+	public TilePanel(EditionPanel editionPanel, String tileName, TileSheet tiles, int tileX, int tileY, Palette palette) {
 		this.editionPanel = editionPanel;
 		this.tileName = tileName;
 		this.palette = palette;
@@ -64,6 +81,7 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 		this.pointedX = -1;
 		this.pointedY = -1;
 
+		createAtlas();
 		this.setPreferredSize(new Dimension(8 * tilesX * zoom, 8 * tilesY * zoom));
 
 		this.addMouseListener(this);
@@ -72,38 +90,75 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 		EventManager.getInstance().registerListener(this);
 	}
 
+	/**
+	 * Renders all tiles in an indexed image, only done when the sheet size
+	 * changes. Pixels are palette indexes, so colors only depend on the color
+	 * model.
+	 */
+	private void createAtlas() {
+		atlas = new BufferedImage(Tile.TILE_SIZE * tilesX, Tile.TILE_SIZE * tilesY, BufferedImage.TYPE_BYTE_INDEXED,
+				createColorModel());
+		atlasData = ((DataBufferByte) atlas.getRaster().getDataBuffer()).getData();
+
+		for (int tileIndex = 0; tileIndex < tilesX * tilesY; tileIndex++) {
+			renderTile(tileIndex);
+		}
+	}
+
+	private void renderTile(int tileIndex) {
+		if (tileIndex >= tilesX * tilesY || tileIndex >= tiles.getTileNumber()) {
+			return;
+		}
+
+		int atlasWidth = atlas.getWidth();
+		int baseIndex = (tileIndex / tilesX) * Tile.TILE_SIZE * atlasWidth + (tileIndex % tilesX) * Tile.TILE_SIZE;
+		for (int yIndex = 0; yIndex < Tile.TILE_SIZE; yIndex++) {
+			tiles.copyLine(tileIndex, yIndex, atlasData, baseIndex + yIndex * atlasWidth);
+		}
+	}
+
+	private IndexColorModel createColorModel() {
+		// Even with 8 bits depth, selected palette is set (to 0)
+		int[] colorMap = palette.getColorMap(selectedPalette);
+		if (!doDrawBackground) {
+			colorMap[0] = Color.white.getRGB();
+		}
+
+		return new IndexColorModel(8, COLOR_MODEL_SIZE, colorMap, 0, false, -1, DataBuffer.TYPE_BYTE);
+	}
+
+	/**
+	 * Palette changes only swap the color model, the pixels are shared
+	 */
+	private void updateColorModel() {
+		atlas = new BufferedImage(createColorModel(), atlas.getRaster(), false, null);
+	}
+
 	private void updateSize() {
 		this.setPreferredSize(new Dimension(8 * tilesX * zoom, 8 * tilesY * zoom));
 	}
 
 	public void setZoom(int zoom) {
 		this.zoom = zoom;
+		this.gridTile = null;
 		updateSize();
 		repaint();
 	}
 
 	private void resizeTiles() {
-		// Check if need to resize array
-		if (tiles.length < tilesX * tilesY) {
-			Tile[] newTiles = new Tile[tilesX * tilesY];
-
-			// Copy old tiles
-			for (int i = 0; i < tiles.length; i++) {
-				newTiles[i] = tiles[i];
-			}
-
-			// Create new empty tiles
-			for (int i = tiles.length; i < newTiles.length; i++) {
-				newTiles[i] = new Tile();
-			}
+		// Check if need to add empty tiles
+		if (tiles.getTileNumber() < tilesX * tilesY) {
+			tiles.setTileNumber(tilesX * tilesY);
 		}
 
+		createAtlas();
 		updateSize();
 		revalidate();
 	}
 	
 	public void setPaletteIndex(int selectedIndex) {
 		selectedPalette = selectedIndex;
+		updateColorModel();
 		repaint();
 	}
 
@@ -121,102 +176,149 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 
 	public void setDoDrawBackground(boolean doDrawBackground) {
 		this.doDrawBackground = doDrawBackground;
+		updateColorModel();
 		repaint();
 	}
 
 	public void setDoDrawTileGrid(boolean doDrawTileGrid) {
 		this.doDrawTileGrid = doDrawTileGrid;
+		this.gridTile = null;
 		repaint();
 	}
 
 	public void setDoDrawPixelGrid(boolean doDrawPixelGrid) {
 		this.doDrawPixelGrid = doDrawPixelGrid;
+		this.gridTile = null;
 		repaint();
 	}
 
-	@Override
-	protected void paintComponent(Graphics g) {
-		super.paintComponent(g);
-		Graphics2D g2d = (Graphics2D) g;
-
-		int tileIndex = 0;
-		for (int y = 0; y < tilesY; y++) {
-			for (int x = 0; x < tilesX; x++) {
-				// There will always be enough tiles!
-				Tile tile = tiles[tileIndex++];
-				int baseX = x * Tile.TILE_SIZE * zoom;
-				int baseY = y * Tile.TILE_SIZE * zoom;
-
-				for (int xIndex = 0; xIndex < Tile.TILE_SIZE; xIndex++) {
-					for (int yIndex = 0; yIndex < Tile.TILE_SIZE; yIndex++) {
-						// Even with 8 bits depth, selected palette is set (to 0)
-						int paletteIndex = tile.getData(xIndex, yIndex);
-
-						Color color;
-						if (paletteIndex == 0 && !doDrawBackground) {
-							color = Color.white;
-						} else {
-							color = palette.getColorInPalette(selectedPalette, paletteIndex);
-						}
-						g2d.setColor(color);
-						g2d.fillRect(baseX + xIndex * zoom, baseY + yIndex * zoom, zoom, zoom);
-					}
+	/**
+	 * Grids are the same for every tile, so only one tile of grid is drawn and
+	 * then repeated as a texture.
+	 */
+	private BufferedImage getGridTile() {
+		if (gridTile == null) {
+			int tileSize = Tile.TILE_SIZE * zoom;
+			gridTile = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d = gridTile.createGraphics();
+
+			// Draw pixel grid when asked (not smart if zoom is 1)
+			// Draw before to prioritize tile grid
+			if (doDrawPixelGrid) {
+				g2d.setColor(Color.darkGray);
+				for (int i = 0; i < Tile.TILE_SIZE; i++) {
+					g2d.drawLine(0, zoom * i, tileSize, zoom * i);
+					g2d.drawLine(zoom * i, 0, zoom * i, tileSize);
 				}
 			}
+
+			// Draw tile grid when asked
+			if (doDrawTileGrid) {
+				g2d.setColor(Color.lightGray);
+				g2d.drawLine(0, 0, tileSize, 0);
+				g2d.drawLine(0, 0, 0, tileSize);
+			}
+
+			g2d.dispose();
 		}
 
-		// Draw pixel grid when asked (not smart if zoom is 1)
-		// Draw before to prioritize tile grid
-		if (doDrawPixelGrid) {
-			g2d.setColor(Color.darkGray);
+		return gridTile;
+	}
 
-			// Draw horizontal lines
-			for (int i = 0; i < tilesY * 8; i++) {
-				g2d.drawLine(0, zoom * i, 8 * tilesX * zoom, zoom * i);
-			}
+	private Rectangle getSelectionBounds(int x, int y) {
+		if (x == -1 || y == -1) {
+			return null;
+		}
 
-			// Draw vertical lines
-			for (int i = 0; i < tilesX * 8; i++) {
-				g2d.drawLine(zoom * i, 0, zoom * i, 8 * tilesY * zoom);
-			}
+		// The stroke is centered on the rectangle border
+		int tileSize = Tile.TILE_SIZE * zoom;
+		return new Rectangle(x - SELECTION_MARGIN, y - SELECTION_MARGIN, tileSize + 2 * SELECTION_MARGIN + 1,
+				tileSize + 2 * SELECTION_MARGIN + 1);
+	}
+
+	private void moveSelection(int x, int y) {
+		if (x == pointedX && y == pointedY) {
+			return;
 		}
 
-		// Draw tile grid when asked
-		if (doDrawTileGrid) {
-			g2d.setColor(Color.lightGray);
+		// Only repaint where the selection was and where it is now
+		Rectangle oldBounds = getSelectionBounds(pointedX, pointedY);
+		Rectangle newBounds = getSelectionBounds(x, y);
+		pointedX = x;
+		pointedY = y;
 
-			// Draw horizontal lines
-			for (int i = 0; i < tilesY; i++) {
-				g2d.drawLine(0, 8 * zoom * i, 8 * tilesX * zoom, 8 * zoom * i);
-			}
+		if (oldBounds == null) {
+			oldBounds = newBounds;
+		} else if (newBounds != null) {
+			oldBounds = oldBounds.union(newBounds);
+		}
+
+		if (oldBounds != null) {
+			repaint(oldBounds);
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Graphics2D g2d = (Graphics2D) g;
 
-			// Draw vertical lines
-			for (int i = 0; i < tilesX; i++) {
-				g2d.drawLine(8 * zoom * i, 0, 8 * zoom * i, 8 * tilesY * zoom);
+		// Only paint the part of the sheet that needs it
+		int tileSize = Tile.TILE_SIZE * zoom;
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		clip = clip.intersection(new Rectangle(0, 0, atlas.getWidth() * zoom, atlas.getHeight() * zoom));
+
+		if (!clip.isEmpty()) {
+			// Nearest neighbour scaling of the atlas, aligned on atlas pixels
+			int sourceX1 = clip.x / zoom;
+			int sourceY1 = clip.y / zoom;
+			int sourceX2 = Math.min(atlas.getWidth(), (clip.x + clip.width + zoom - 1) / zoom);
+			int sourceY2 = Math.min(atlas.getHeight(), (clip.y + clip.height + zoom - 1) / zoom);
+			g2d.drawImage(atlas, sourceX1 * zoom, sourceY1 * zoom, sourceX2 * zoom, sourceY2 * zoom, sourceX1, sourceY1,
+					sourceX2, sourceY2, null);
+
+			if (doDrawPixelGrid || doDrawTileGrid) {
+				g2d.setPaint(new TexturePaint(getGridTile(), new Rectangle(0, 0, tileSize, tileSize)));
+				g2d.fill(clip);
 			}
 		}
 
 		// Draw selection rectangle
-		if (pointedX != -1 && pointedY != -1 && pointedX < 8 * zoom * tilesX && pointedY < 8 * zoom * tilesY) {
+		if (pointedX != -1 && pointedY != -1 && pointedX < tileSize * tilesX && pointedY < tileSize * tilesY) {
 			g2d.setColor(Color.white);
-			g2d.setStroke(new BasicStroke(3));
-			g2d.drawRect(pointedX, pointedY, 8 * zoom, 8 * zoom);
+			g2d.setStroke(SELECTION_STROKE);
+			g2d.drawRect(pointedX, pointedY, tileSize, tileSize);
 		}
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteColorChanged(PaletteColorModifiedEvent event) {
+		updateColorModel();
 		repaint();
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onTilePixelMidified(TilePixelModifiedEvent event) {
-//		Tile modifiedTile = tiles[event.getTileIndex()];
-//		modifiedTile.setData(event.getxPixelIndex(), event.getyPixelIndex(), event.getNewColorIndex());
-//		repaint();
+		// Other sheets can have the same tile index
+		if (!event.getTileName().equals(tileName)) {
+			return;
+		}
+
+		int tileIndex = event.getTileIndex();
+		if (tileIndex < tilesX * tilesY) {
+			// Only the modified tile is rendered again
+			tiles.setPixel(tileIndex, event.getxPixelIndex(), event.getyPixelIndex(), event.getNewColorIndex());
+			renderTile(tileIndex);
+
+			int tileSize = Tile.TILE_SIZE * zoom;
+			repaint((tileIndex % tilesX) * tileSize, (tileIndex / tilesX) * tileSize, tileSize, tileSize);
+		}
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onTilePropertiesChanged(TilePropertiesChangedEvent event) {
 		// Only change when it's the same name
 		if (event.getTileName().equals(tileName)) {
@@ -252,9 +354,10 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 		}
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteSelected(PaletteSelectedEvent event) {
 		this.palette = editionPanel.getCurrentPalette();
+		updateColorModel();
 		this.repaint();
 	}
 
@@ -284,9 +387,7 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 
 	@Override
 	public void mouseExited(MouseEvent e) {
-		pointedX = -1;
-		pointedY = -1;
-		repaint();
+		moveSelection(-1, -1);
 	}
 
 	@Override
@@ -300,9 +401,7 @@ public class TilePanel extends JPanel implements MouseListener, MouseMotionListe
 		int y = e.getY();
 
 		// Rescale to beginning of tile
-		pointedX = (x / (8 * zoom)) * 8 * zoom;
-		pointedY = (y / (8 * zoom)) * 8 * zoom;
-		repaint();
+		moveSelection((x / (8 * zoom)) * 8 * zoom, (y / (8 * zoom)) * 8 * zoom);
 	}
 
 }
@@ -2,17 +2,23 @@ package pokemon.panel.ui;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import javax.swing.JComponent;
@@ -20,26 +26,36 @@ import javax.swing.JDesktopPane;
 import javax.swing.JInternalFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 import pokemon.event.Event;
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
+import pokemon.event.palette.PaletteColorModifiedEvent;
 import pokemon.event.palette.PaletteOpenedEvent;
 import pokemon.event.palette.PaletteSelectedEvent;
 import pokemon.event.tile.TileOpenedEvent;
+import pokemon.event.tile.TilePixelModifiedEvent;
 import pokemon.event.tile.TileSelectedEvent;
 import pokemon.event.ui.ArchiveExtractedEvent;
-import pokemon.event.ui.FileDeletedEvent;
+import pokemon.event.ui.ArchiveExtractionProgressEvent;
+import pokemon.event.ui.ArchiveExtractionRequestedEvent;
 import pokemon.event.ui.TreeFileOpened;
+import pokemon.files.DSBufferManager;
+import pokemon.files.DetectedFormat;
 import pokemon.files.FileFormat;
+import pokemon.files.FormatDetector;
 import pokemon.files.FormatEnum;
-import pokemon.files.archive.NARC;
+import pokemon.files.ResourceCache;
+import pokemon.files.archive.MappedNARC;
 import pokemon.files.graphics.NCGR;
 import pokemon.files.graphics.NCLR;
 import pokemon.files.graphics.NSCR;
 import pokemon.logic.Palette;
-import pokemon.logic.ScreenData;
-import pokemon.logic.Tile;
+import pokemon.logic.ScreenMap;
+import pokemon.logic.TileSheet;
 import pokemon.panel.graphics.PalettePanel;
 import pokemon.panel.graphics.ScreenPanel;
 import pokemon.panel.graphics.TilePanel;
@@ -52,25 +68,48 @@ public class EditionPanel extends JDesktopPane {
 	private static final long serialVersionUID = -3697366543301729496L;
 	private static final int MAX_DISPLAY_X = 33;
 	private static final int MAX_DISPLAY_Y = 26;
-
-	private Map<String, Palette> paletteMap;
-	private Map<String, Tile[]> tilesMap;
+	private static final int EXTRACTION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+	// Memory for decoded tiles in MiB, -Dcache.budget=256 to browse bigger files
+	private static final long TILES_CACHE_BUDGET = Long.getLong("cache.budget", 64) << 20;
+	// Palettes are 1 KiB at most
+	private static final long PALETTE_CACHE_BUDGET = TILES_CACHE_BUDGET >> 4;
+
+	// Resources are named by the real path of their file, files of a ROM by their
+	// virtual path
+	private ResourceCache<Palette> paletteCache;
+	private ResourceCache<NCGR> tilesCache;
+	private Set<ResourceCache.Key> openedResources;
+	// Opened files of a ROM or of an archive, their content is a slice of the
+	// mapped file
+	private Map<Path, ByteBuffer> romFiles;
+	// Archives on the disk can change, their files get a new version each time
+	private Map<Path, Long> romFileVersions;
+	// Selected resources are acquired until another one is selected, null keys for
+	// the defaults
 	private Palette currentPalette;
-	private Tile[] currentTiles;
+	private ResourceCache.Key currentPaletteKey;
+	private TileSheet currentTiles;
+	private ResourceCache.Key currentTilesKey;
 
 	// Normal light grey panel but implements open events and opens internal frames
 	public EditionPanel() {
 		this.setBackground(Color.lightGray);
 
-		this.paletteMap = new HashMap<String, Palette>();
-		this.tilesMap = new HashMap<String, Tile[]>();
+		this.paletteCache = new ResourceCache<Palette>(PALETTE_CACHE_BUDGET,
+				palette -> (long) palette.getColors().length * Integer.BYTES);
+		this.tilesCache = new ResourceCache<NCGR>(TILES_CACHE_BUDGET, ncgr -> ncgr.getTileSheet().getPixels().length);
+		this.openedResources = new HashSet<ResourceCache.Key>();
+		this.romFiles = new HashMap<Path, ByteBuffer>();
+		this.romFileVersions = new HashMap<Path, Long>();
 		this.currentPalette = Palette.DEFAULT_PALETTE;
-		this.currentTiles = Tile.DEFAULT_TILES;
+		this.currentPaletteKey = null;
+		this.currentTiles = TileSheet.DEFAULT_SHEET;
+		this.currentTilesKey = null;
 
 		EventManager.getInstance().registerListener(this);
 	}
 
-	private void openInternalFrame(String title, JComponent panel, Dimension dimension) {
+	private void openInternalFrame(String title, JComponent panel, Dimension dimension, Runnable onClosed) {
 		JScrollPane scroll = new JScrollPane(panel);
 		scroll.setPreferredSize(dimension);
 		scroll.getVerticalScrollBar().setUnitIncrement(16);
@@ -80,38 +119,49 @@ public class EditionPanel extends JDesktopPane {
 
 		JInternalFrame internalFrame = new JInternalFrame(title, true, true, false, true);
 		internalFrame.add(scroll);
+		internalFrame.addInternalFrameListener(new InternalFrameAdapter() {
+			@Override
+			public void internalFrameClosed(InternalFrameEvent e) {
+				// Closed panels must not receive events anymore
+				EventManager.getInstance().unregisterListener(panel);
+				if (onClosed != null) {
+					onClosed.run();
+				}
+			}
+		});
 		internalFrame.pack(); // Size defined by its panel
 
 		this.add(internalFrame);
 		internalFrame.setVisible(true);
 	}
 
-	private void openInternalPatternFrame(NCLR nclr, String paletteName) {
+	private void openInternalPatternFrame(ResourceCache.Key key, String fileName) throws IOException {
 		// Do nothing if palette opened
-		if (!paletteMap.containsKey(paletteName)) {
-			Palette palette = nclr.createPalette();
+		if (openedResources.add(key)) {
+			String paletteName = key.path().toString();
+			Palette palette = paletteCache.acquire(key, this::loadPalette);
 			boolean isPaletteSelected = false;
-			paletteMap.put(paletteName, palette);
 
 			if (currentPalette == Palette.DEFAULT_PALETTE) {
-				currentPalette = palette;
+				selectPalette(key);
 				isPaletteSelected = true;
 			}
 
 			EventManager.getInstance().throwEvent(new PaletteOpenedEvent(paletteName, palette, isPaletteSelected));
-			PalettePanel panel = new PalettePanel(palette);
-			openInternalFrame(paletteName, panel, panel.getPreferredSize());
+			PalettePanel panel = new PalettePanel(paletteName, palette);
+			openInternalFrame(fileName, panel, panel.getPreferredSize(), () -> closeResource(paletteCache, key));
 		}
 	}
 
-	private void openInternalTileFrame(NCGR ncgr, String tilesName) {
-		if (!tilesMap.containsKey(tilesName)) {
-			Tile[] tiles = ncgr.createTiles();
+	private void openInternalTileFrame(ResourceCache.Key key, String fileName) throws IOException {
+		if (openedResources.add(key)) {
+			String tilesName = key.path().toString();
+			NCGR ncgr = tilesCache.acquire(key, this::loadTiles);
+			TileSheet tiles = ncgr.getTileSheet();
 			boolean areTilesSelected = false;
-			tilesMap.put(tilesName, tiles);
 
-			if (currentTiles == Tile.DEFAULT_TILES) {
-				currentTiles = tiles;
+			if (currentTiles == TileSheet.DEFAULT_SHEET) {
+				selectTiles(key);
 				areTilesSelected = true;
 			}
 
@@ -124,34 +174,120 @@ public class EditionPanel extends JDesktopPane {
 			int width = Math.min(8 * MAX_DISPLAY_X * 3, 8 * tileX * 5);
 			int height = Math.min(8 * MAX_DISPLAY_Y * 3, 8 * tileY * 5);
 			TilePanel panel = new TilePanel(this, tilesName, tiles, tileX, tileY, currentPalette);
-			openInternalFrame(tilesName, panel, new Dimension(width, height));
+			openInternalFrame(fileName, panel, new Dimension(width, height), () -> closeResource(tilesCache, key));
+		}
+	}
+
+	private void selectPalette(ResourceCache.Key key) throws IOException {
+		// Acquired before the old one is released, it may be the same
+		currentPalette = paletteCache.acquire(key, this::loadPalette);
+		if (currentPaletteKey != null) {
+			paletteCache.release(currentPaletteKey);
+		}
+		currentPaletteKey = key;
+	}
+
+	private void selectTiles(ResourceCache.Key key) throws IOException {
+		currentTiles = tilesCache.acquire(key, this::loadTiles).getTileSheet();
+		if (currentTilesKey != null) {
+			tilesCache.release(currentTilesKey);
+		}
+		currentTilesKey = key;
+	}
+
+	private void closeResource(ResourceCache<?> cache, ResourceCache.Key key) {
+		// Can be dropped from now on, it is decoded again if opened or selected later
+		openedResources.remove(key);
+		if (isOutdated(key)) {
+			// The file changed since, the changes cannot be stored anymore
+			cache.unmarkModified(key);
+		}
+		cache.release(key);
+	}
+
+	private boolean isOutdated(ResourceCache.Key key) {
+		try {
+			return !key.equals(getKey(key.path()));
+		} catch (IOException e) {
+			// Deleted
+			return true;
 		}
 	}
 
 	private void openInternalScreenFrame(NSCR nscr, String screenName) {
-		ScreenData[] screenData = nscr.createScreenData();
-		int screenWidth = nscr.getScreenWidth();
-		int screenHeight = nscr.getScreenHeight();
+		ScreenMap screenMap = nscr.createScreenMap();
+		int screenWidth = screenMap.getWidth();
+		int screenHeight = screenMap.getHeight();
 
 		int width = Math.min(8 * MAX_DISPLAY_X * 3, 8 * screenWidth * 5);
 		int height = Math.min(8 * MAX_DISPLAY_Y * 3, 8 * screenHeight * 5);
-		ScreenPanel panel = new ScreenPanel(this, screenData, currentPalette, currentTiles, screenWidth, screenHeight);
-		openInternalFrame(screenName, panel, new Dimension(width, height));
+		ScreenPanel panel = new ScreenPanel(this, screenMap, currentPalette, currentTiles,
+				currentTilesKey == null ? null : currentTilesKey.path().toString());
+		openInternalFrame(screenName, panel, new Dimension(width, height), null);
 	}
 
-	private void extractArchive(File archiveFile) throws IOException {
-		// Create stream for NARC
-		InputStream inStream = new DataInputStream(new FileInputStream(archiveFile));
+	private Palette loadPalette(Path path) throws IOException {
+		NCLR nclr = new NCLR();
+		loadFile(nclr, path);
+		return nclr.createPalette();
+	}
 
-		// Create NARC and extract
-		NARC narc = new NARC(archiveFile);
-		narc.load(inStream);
+	private NCGR loadTiles(Path path) throws IOException {
+		NCGR ncgr = new NCGR();
+		loadFile(ncgr, path);
+		return ncgr;
+	}
 
-		// Close stream
-		inStream.close();
+	private void loadFile(FileFormat fileFormat, Path path) throws IOException {
+		DetectedFormat detectedFormat = detect(path);
+		ByteBuffer content = romFiles.get(path);
+		InputStream fileStream;
+		if (content != null) {
+			// Read in the mapped ROM
+			fileStream = detectedFormat.isCompressed()
+					? new ByteArrayInputStream(detectedFormat.getCompressionMethod().getCodec().decompress(content))
+					: DSBufferManager.newInputStream(content);
+		} else {
+			fileStream = new BufferedInputStream(new FileInputStream(path.toFile()));
+			if (detectedFormat.isCompressed()) {
+				byte[] data = detectedFormat.getCompressionMethod().getCodec().decompress(fileStream);
+				fileStream.close();
+				fileStream = new ByteArrayInputStream(data);
+			}
+		}
+
+		try (DataInputStream inStream = new DataInputStream(fileStream)) {
+			fileFormat.load(inStream);
+		}
+	}
+
+	private DetectedFormat detect(Path path) throws IOException {
+		ByteBuffer content = romFiles.get(path);
+		return content != null ? FormatDetector.detect(content) : FormatDetector.getInstance().detect(path.toFile());
+	}
+
+	private ResourceCache.Key getKey(Path path) throws IOException {
+		// The ROM does not change while it is mapped
+		if (romFiles.containsKey(path)) {
+			return new ResourceCache.Key(path, romFileVersions.getOrDefault(path, 0L));
+		}
+
+		return ResourceCache.getKey(path);
+	}
+
+	private void extractArchive(File archiveFile) throws IOException {
+		// Map the NARC, only its tables are read, then extract files in parallel
+		File extractDir;
+		try (MappedNARC narc = new MappedNARC(archiveFile)) {
+			extractDir = narc.getExtractDir(archiveFile);
+			int fileNumber = narc.getFileNumber();
+			narc.extractAll(extractDir, EXTRACTION_PARALLELISM,
+					extractedFiles -> EventManager.getInstance().postEvent(
+							new ArchiveExtractionProgressEvent(archiveFile.toPath(), extractedFiles, fileNumber)));
+		}
 
 		// Notify UI that a new directory has been created
-		Event event = new ArchiveExtractedEvent(archiveFile.toPath(), narc.getExtractDir().toPath());
+		Event event = new ArchiveExtractedEvent(archiveFile.toPath(), extractDir.toPath());
 		EventManager.getInstance().throwEvent(event);
 		
 		// Delete file
@@ -162,63 +298,62 @@ public class EditionPanel extends JDesktopPane {
 		return currentPalette;
 	}
 
-	public Tile[] getCurrentTiles() {
+	public TileSheet getCurrentTiles() {
 		return currentTiles;
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.BACKGROUND)
+	public void onArchiveExtractionRequested(ArchiveExtractionRequestedEvent event) throws IOException {
+		// Delete the old directory, the tree already forgot it
+		if (event.getDestDir() != null) {
+			try (Stream<Path> paths = Files.walk(event.getDestDir().toPath())) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+
+		extractArchive(event.getArchiveFile());
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
 	public void onFileOpened(TreeFileOpened event) throws IOException, InstantiationException, IllegalAccessException,
 			IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
 		int lastPointIndex = event.getFileName().lastIndexOf('.');
-		String baseName = event.getFileName().substring(0, lastPointIndex);
-		String extension = event.getFileName().substring(lastPointIndex + 1);
+		String extension = lastPointIndex == -1 ? "" : event.getFileName().substring(lastPointIndex + 1);
+		if (event.getContent() != null) {
+			// Compared by content, the archive was changed on the disk and mapped again
+			ByteBuffer oldContent = romFiles.put(event.getPath(), event.getContent());
+			if (oldContent != null && !oldContent.equals(event.getContent())) {
+				romFileVersions.merge(event.getPath(), 1L, Long::sum);
+			}
+		}
 
-		// Get format from extension, if unknown just give up...
-		FormatEnum format = FormatEnum.getFromExtension(extension.toLowerCase());
+		// Get format from content (extracted files are often .bin), else from the
+		// extension. If unknown just give up...
+		DetectedFormat detectedFormat = detect(event.getPath());
+		FormatEnum format = detectedFormat.isKnown() ? detectedFormat.getFormat()
+				: FormatEnum.getFromExtension(extension.toLowerCase());
 		if (format == FormatEnum.UNKNOWN) {
 			return;
 		} else if (format == FormatEnum.ARCHIVE) {
-			// If it is an archive, check if the destination folder does not exist...
-			File destDir = new File(event.getPath().toFile().getParent() + File.separator + baseName);
-			if (destDir.exists()) {
-				int answer = JOptionPane.showConfirmDialog(null,
-						"The extracted folder already exist... Do you want to override it?", "Destination exists",
-						JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
-
-				if (answer == JOptionPane.NO_OPTION) {
-					return;
-				}
-
-				// Notify deleted archive
-				Event archiveDirectoryDeleted = new FileDeletedEvent(destDir);
-				EventManager.getInstance().throwEvent(archiveDirectoryDeleted);
-				
-				// Delete directory
-				try (Stream<Path> paths = Files.walk(destDir.toPath())) {
-					paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-				}
+			// Archives are expanded in the tree (extracted from their popup menu), they
+			// must be decompressed first
+			if (detectedFormat.isCompressed()) {
+				JOptionPane.showMessageDialog(null, "Compressed archives cannot be opened, decompress it first",
+						"Compressed archive", JOptionPane.WARNING_MESSAGE);
 			}
-
-			// Extract archive
-			extractArchive(event.getPath().toFile());
+		} else if (format == FormatEnum.PALETTE) {
+			// Decoded palettes and tiles are cached, they can be opened again quickly
+			openInternalPatternFrame(getKey(event.getPath()), event.getFileName());
+		} else if (format == FormatEnum.TILE) {
+			openInternalTileFrame(getKey(event.getPath()), event.getFileName());
 		} else {
 
 			// Get empty constructor and create object
 			Class<? extends FileFormat> formatClass = format.getFormatClass();
 			FileFormat fileFormat = formatClass.getConstructor().newInstance();
-			DataInputStream inStream = new DataInputStream(new FileInputStream(event.getPath().toFile()));
-			fileFormat.load(inStream);
-			inStream.close();
+			loadFile(fileFormat, event.getPath());
 
 			switch (format) {
-			case PALETTE:
-				openInternalPatternFrame((NCLR) fileFormat, event.getFileName());
-				break;
-
-			case TILE:
-				openInternalTileFrame((NCGR) fileFormat, event.getFileName());
-				break;
-
 			case SCREEN:
 				openInternalScreenFrame((NSCR) fileFormat, event.getFileName());
 				break;
@@ -230,16 +365,42 @@ public class EditionPanel extends JDesktopPane {
 		}
 	}
 
-	@EventListener
-	public void onPaletteSelected(PaletteSelectedEvent event) {
-		if (paletteMap.containsKey(event.getPaletteName())) {
-			currentPalette = paletteMap.get(event.getPaletteName());
+	@EventListener(thread = ListenerThread.EDT)
+	public void onPaletteSelected(PaletteSelectedEvent event) throws IOException {
+		try {
+			selectPalette(getKey(Path.of(event.getPaletteName())));
+		} catch (NoSuchFileException e) {
+			// Deleted since it was opened, keep the current one
+		}
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onTileSelectedEvent(TileSelectedEvent event) throws IOException {
+		try {
+			selectTiles(getKey(Path.of(event.getTileName())));
+		} catch (NoSuchFileException e) {
+			// Deleted since it was opened, keep the current one
 		}
 	}
 
-	public void onTileSelectedEvent(TileSelectedEvent event) {
-		if (tilesMap.containsKey(event.getTileName())) {
-			currentTiles = tilesMap.get(event.getTileName());
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onTilePixelModified(TilePixelModifiedEvent event) {
+		// Edits are only in memory, they must not be dropped from the cache
+		markModified(tilesCache, event.getTileName());
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onPaletteColorModified(PaletteColorModifiedEvent event) {
+		markModified(paletteCache, event.getPaletteName());
+	}
+
+	private void markModified(ResourceCache<?> cache, String name) {
+		// Only the opened resource edited, the names are the paths of the keys
+		for (ResourceCache.Key key : openedResources) {
+			if (key.path().toString().equals(name)) {
+				cache.markModified(key);
+			}
 		}
 	}
 
@@ -0,0 +1,43 @@
+package pokemon.panel.ui;
+
+import javax.swing.JProgressBar;
+
+import pokemon.event.EventListener;
+import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
+import pokemon.event.ui.ArchiveExtractedEvent;
+import pokemon.event.ui.ArchiveExtractionProgressEvent;
+
+/**
+ * Shows the progress of the archive being extracted, hidden the rest of the
+ * time. Progress events are coalesced, so it is updated at most once per frame.
+ */
+public class ExtractionProgressBar extends JProgressBar {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 4630263938722402553L;
+
+	public ExtractionProgressBar() {
+		this.setStringPainted(true);
+		this.setVisible(false);
+
+		EventManager.getInstance().registerListener(this);
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onExtractionProgress(ArchiveExtractionProgressEvent event) {
+		this.setMaximum(event.getFileNumber());
+		this.setValue(event.getExtractedFiles());
+		this.setString("Extracting %s: %d / %d files".formatted(event.getArchivePath().getFileName(),
+				event.getExtractedFiles(), event.getFileNumber()));
+		this.setVisible(event.getExtractedFiles() < event.getFileNumber());
+	}
+
+	@EventListener(thread = ListenerThread.EDT)
+	public void onArchiveExtracted(ArchiveExtractedEvent event) {
+		this.setVisible(false);
+	}
+
+}
@@ -0,0 +1,556 @@
+package pokemon.panel.ui;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+
+import pokemon.files.DetectedFormat;
+import pokemon.files.FormatDetector;
+import pokemon.files.FormatEnum;
+import pokemon.files.archive.CompressionMethodEnum;
+import pokemon.files.archive.MappedNARC;
+import pokemon.panel.ui.FileTreeWatcher.FileChange;
+import pokemon.panel.ui.RomTreeModel.VirtualNodeObject;
+
+/**
+ * <p>
+ * Tree of the project files, directories are only listed when they are
+ * expanded the first time. Listing is done in the background (formats of
+ * unknown files are detected there too), a "Loading..." node is shown in the
+ * meantime. Children are sorted, directories first, and kept once loaded.
+ * </p>
+ *
+ * <p>
+ * Listed directories are watched, changes made outside the editor are applied
+ * to the loaded nodes (see {@link FileTreeWatcher}).
+ * </p>
+ *
+ * <p>
+ * NARC archives are shown as directories. When expanded they are mapped and
+ * their files are shown as virtual nodes (see {@link RomTreeModel}), nothing is
+ * extracted.
+ * </p>
+ *
+ * <p>
+ * Must be used from the EDT only, like any tree model.
+ * </p>
+ */
+public class FileTreeModel extends DefaultTreeModel implements TreeWillExpandListener {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 2470196473524128913L;
+
+	private static final String LOADING_LABEL = "Loading...";
+
+	// Directories first, then by name with numbers in order (file_2 before file_10)
+	static final Comparator<DefaultMutableTreeNode> NODE_ORDER = Comparator
+			.comparing((DefaultMutableTreeNode node) -> !node.getAllowsChildren())
+			.thenComparing(node -> ((NodeObject) node.getUserObject()).getNodeName(), FileTreeModel::compareNames);
+
+	// Loaded nodes only
+	private Map<Path, DefaultMutableTreeNode> nodeMap;
+	// Changes in directories being listed, applied after the listing
+	private Map<DefaultMutableTreeNode, List<FileChange>> deferredChanges;
+	private FileTreeWatcher watcher;
+
+	public FileTreeModel(Path rootPath) {
+		super(createNode(rootPath, "/", true, false), true);
+		this.nodeMap = new HashMap<Path, DefaultMutableTreeNode>();
+		this.deferredChanges = new HashMap<DefaultMutableTreeNode, List<FileChange>>();
+		nodeMap.put(rootPath, getRootNode());
+
+		try {
+			this.watcher = new FileTreeWatcher(changes -> SwingUtilities.invokeLater(() -> applyChanges(changes)));
+		} catch (IOException e) {
+			// The tree still works, it is just not updated
+			e.printStackTrace();
+		}
+	}
+
+	private DefaultMutableTreeNode getRootNode() {
+		return (DefaultMutableTreeNode) getRoot();
+	}
+
+	private static DefaultMutableTreeNode createNode(Path path, String label, boolean isDirectory,
+			boolean isArchive) {
+		NodeObject nodeObject = new NodeObject(path, path.getFileName() == null ? label
+				: path.getFileName().toString(), label);
+		nodeObject.isArchive = isArchive;
+		return new DefaultMutableTreeNode(nodeObject, isDirectory || isArchive);
+	}
+
+	/**
+	 * @param path the path of a file or directory
+	 * @return its node, null if its directory has not been loaded yet
+	 */
+	public DefaultMutableTreeNode getNode(Path path) {
+		return nodeMap.get(path);
+	}
+
+	@Override
+	public void treeWillExpand(TreeExpansionEvent event) {
+		loadChildren((DefaultMutableTreeNode) event.getPath().getLastPathComponent());
+	}
+
+	/**
+	 * Lists the directory in the background if it has not been done yet. Archives
+	 * and their directories only read their tables, it is done right away.
+	 *
+	 * @param node the directory or archive node
+	 */
+	public void loadChildren(DefaultMutableTreeNode node) {
+		if (node.getUserObject() instanceof VirtualNodeObject virtualObject) {
+			RomTreeModel.insertChildren(this, node, RomTreeModel.createChildren(virtualObject));
+		} else if (node.getUserObject() instanceof NodeObject nodeObject && nodeObject.state == LoadState.NOT_LOADED) {
+			if (nodeObject.isArchive) {
+				nodeObject.state = LoadState.LOADED;
+				RomTreeModel.insertChildren(this, node, loadArchive(nodeObject.getNodePath()));
+				return;
+			}
+
+			nodeObject.state = LoadState.LOADING;
+			insertNodeInto(new DefaultMutableTreeNode(LOADING_LABEL, false), node, 0);
+			new DirectoryLoader(node, nodeObject.getNodePath()).execute();
+		}
+	}
+
+	private static List<DefaultMutableTreeNode> loadArchive(Path archivePath) {
+		try (MappedNARC narc = new MappedNARC(archivePath.toFile())) {
+			return RomTreeModel.createChildren(archivePath, narc);
+		} catch (IOException e) {
+			// Broken archive, shown empty
+			e.printStackTrace();
+			return List.of();
+		}
+	}
+
+	@Override
+	public void treeWillCollapse(TreeExpansionEvent event) {
+		// Children are kept
+	}
+
+	/**
+	 * Removes a node and forgets all its loaded children, nothing is read on the
+	 * disk.
+	 *
+	 * @param path the removed file or directory
+	 * @return the parent of the removed node, null if the node was not loaded
+	 */
+	public DefaultMutableTreeNode removeNode(Path path) {
+		DefaultMutableTreeNode node = nodeMap.get(path);
+		if (node == null || node == getRoot()) {
+			return null;
+		}
+
+		DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode) node.getParent();
+		forget(node);
+		removeNodeFromParent(node);
+		return parentNode;
+	}
+
+	/**
+	 * Adds a directory in a loaded directory, at its sorted place. It is listed
+	 * when it is expanded.
+	 *
+	 * @param parentNode the directory node
+	 * @param path       the added directory
+	 */
+	public void addDirectory(DefaultMutableTreeNode parentNode, Path path) {
+		addNode(parentNode, path, true, false, path.getFileName().toString());
+	}
+
+	/**
+	 * Adds an uncompressed archive in a loaded directory, at its sorted place.
+	 * Called on the EDT, the caller knows the format so the file is not read.
+	 *
+	 * @param parentNode the directory node
+	 * @param path       the added archive
+	 */
+	public void addArchive(DefaultMutableTreeNode parentNode, Path path) {
+		DetectedFormat format = new DetectedFormat(FormatEnum.ARCHIVE, CompressionMethodEnum.NONE);
+		addNode(parentNode, path, false, true, getLabel(path.getFileName().toString(), format));
+	}
+
+	private void addNode(DefaultMutableTreeNode parentNode, Path path, boolean isDirectory, boolean isArchive,
+			String label) {
+		// Something at the same place is replaced
+		removeNode(path);
+
+		DefaultMutableTreeNode node = createNode(path, label, isDirectory, isArchive);
+
+		int index = 0;
+		while (index < parentNode.getChildCount()
+				&& compareNodes((DefaultMutableTreeNode) parentNode.getChildAt(index), node) < 0) {
+			index++;
+		}
+
+		insertNodeInto(node, parentNode, index);
+		nodeMap.put(path, node);
+	}
+
+	private void forget(DefaultMutableTreeNode node) {
+		Enumeration<TreeNode> subtree = node.depthFirstEnumeration();
+		while (subtree.hasMoreElements()) {
+			DefaultMutableTreeNode subtreeNode = (DefaultMutableTreeNode) subtree.nextElement();
+			if (subtreeNode.getUserObject() instanceof NodeObject nodeObject) {
+				nodeMap.remove(nodeObject.getNodePath());
+				deferredChanges.remove(subtreeNode);
+				if (watcher != null && nodeObject.state != LoadState.NOT_LOADED && !nodeObject.isArchive) {
+					watcher.unwatch(nodeObject.getNodePath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes seen by the watcher to the loaded nodes. Only the
+	 * changed nodes are touched.
+	 *
+	 * @param changes the changes of a burst, in order
+	 */
+	public void applyChanges(List<FileChange> changes) {
+		for (FileChange change : changes) {
+			// A listing concerns the directory itself, else the parent
+			Path dir = change.getChildren() != null ? change.getPath() : change.getPath().getParent();
+			DefaultMutableTreeNode dirNode = dir == null ? null : nodeMap.get(dir);
+			if (dirNode == null) {
+				// Not listed, it will be up to date when listed
+				continue;
+			}
+
+			NodeObject dirObject = (NodeObject) dirNode.getUserObject();
+			if (dirObject.state == LoadState.LOADING) {
+				deferredChanges.computeIfAbsent(dirNode, _ -> new ArrayList<FileChange>()).add(change);
+			} else if (dirObject.state == LoadState.LOADED) {
+				applyChange(dirNode, change);
+			}
+		}
+	}
+
+	private void applyChange(DefaultMutableTreeNode dirNode, FileChange change) {
+		// Events were lost, drop the nodes of files which are not there anymore
+		if (change.getChildren() != null) {
+			Set<Path> children = new HashSet<Path>(change.getChildren());
+			for (int i = dirNode.getChildCount() - 1; i >= 0; i--) {
+				NodeObject child = (NodeObject) ((DefaultMutableTreeNode) dirNode.getChildAt(i)).getUserObject();
+				if (!children.contains(child.getNodePath())) {
+					removeNode(child.getNodePath());
+				}
+			}
+			return;
+		}
+
+		Path path = change.getPath();
+		DefaultMutableTreeNode node = nodeMap.get(path);
+		if (!change.exists()) {
+			removeNode(path);
+		} else if (node == null || node.getAllowsChildren() != (change.isDirectory() || change.isArchive())
+				|| change.isArchive()) {
+			// A changed archive is mapped again when expanded
+			addNode(dirNode, path, change.isDirectory(), change.isArchive(), change.getLabel());
+		} else {
+			// Modified, the format may have changed
+			NodeObject nodeObject = (NodeObject) node.getUserObject();
+			if (!nodeObject.nodeLabel.equals(change.getLabel())) {
+				nodeObject.nodeLabel = change.getLabel();
+				nodeChanged(node);
+			}
+		}
+	}
+
+	private static int compareNodes(DefaultMutableTreeNode node1, DefaultMutableTreeNode node2) {
+		// Loading node first, it is removed anyway
+		if (!(node1.getUserObject() instanceof NodeObject)) {
+			return -1;
+		}
+
+		return NODE_ORDER.compare(node1, node2);
+	}
+
+	/**
+	 * Compares names ignoring case, and numbers in names by their value.
+	 */
+	private static int compareNames(String name1, String name2) {
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < name1.length() && i2 < name2.length()) {
+			char c1 = name1.charAt(i1);
+			char c2 = name2.charAt(i2);
+
+			if (Character.isDigit(c1) && Character.isDigit(c2)) {
+				// Compare the whole numbers, without leading zeros
+				int start1 = i1;
+				int start2 = i2;
+				while (i1 < name1.length() && Character.isDigit(name1.charAt(i1))) {
+					i1++;
+				}
+				while (i2 < name2.length() && Character.isDigit(name2.charAt(i2))) {
+					i2++;
+				}
+
+				String number1 = stripZeros(name1.substring(start1, i1));
+				String number2 = stripZeros(name2.substring(start2, i2));
+				int result = number1.length() != number2.length() ? number1.length() - number2.length()
+						: number1.compareTo(number2);
+				if (result != 0) {
+					return result;
+				}
+			} else {
+				int result = Character.compare(Character.toLowerCase(c1), Character.toLowerCase(c2));
+				if (result != 0) {
+					return result;
+				}
+				i1++;
+				i2++;
+			}
+		}
+
+		int result = (name1.length() - i1) - (name2.length() - i2);
+		return result != 0 ? result : name1.compareTo(name2);
+	}
+
+	private static String stripZeros(String number) {
+		int i = 0;
+		while (i < number.length() - 1 && number.charAt(i) == '0') {
+			i++;
+		}
+		return number.substring(i);
+	}
+
+	/**
+	 * @param file a file
+	 * @return true if it is an uncompressed NARC archive, which can be expanded
+	 */
+	static boolean isArchive(Path file) {
+		// Files with another known extension do not need to be read
+		String fileName = file.getFileName().toString();
+		int lastPointIndex = fileName.lastIndexOf('.');
+		String extension = lastPointIndex == -1 ? "" : fileName.substring(lastPointIndex + 1).toLowerCase();
+		FormatEnum format = FormatEnum.getFromExtension(extension);
+		if (format != FormatEnum.UNKNOWN && format != FormatEnum.ARCHIVE) {
+			return false;
+		}
+
+		try {
+			DetectedFormat detectedFormat = FormatDetector.getInstance().detect(file.toFile());
+			return detectedFormat.getFormat() == FormatEnum.ARCHIVE && !detectedFormat.isCompressed();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	static String getLabel(Path path, boolean isDirectory) {
+		String name = path.getFileName().toString();
+		return isDirectory ? name : getFileLabel(path, name);
+	}
+
+	private static String getFileLabel(Path file, String fileName) {
+		// Files with a known extension do not need to be read
+		int lastPointIndex = fileName.lastIndexOf('.');
+		String extension = lastPointIndex == -1 ? "" : fileName.substring(lastPointIndex + 1).toLowerCase();
+		if (FormatEnum.getFromExtension(extension) != FormatEnum.UNKNOWN) {
+			return fileName;
+		}
+
+		// Else show the format found in the file (cached by the detector)
+		try {
+			return getLabel(fileName, FormatDetector.getInstance().detect(file.toFile()));
+		} catch (IOException e) {
+			// Just a label...
+		}
+
+		return fileName;
+	}
+
+	/**
+	 * @param fileName the name of a file
+	 * @param format   the format found in the file
+	 * @return the name, followed by the format if the extension does not tell it
+	 *         all
+	 */
+	static String getLabel(String fileName, DetectedFormat format) {
+		int lastPointIndex = fileName.lastIndexOf('.');
+		String extension = lastPointIndex == -1 ? "" : fileName.substring(lastPointIndex + 1).toLowerCase();
+		if (!format.isKnown()
+				|| (FormatEnum.getFromExtension(extension) == format.getFormat() && !format.isCompressed())) {
+			return fileName;
+		}
+
+		String formatName = format.getFormat().getExtension().toUpperCase();
+		if (format.isCompressed()) {
+			formatName += ", " + format.getCompressionMethod();
+		}
+		return "%s [%s]".formatted(fileName, formatName);
+	}
+
+	private enum LoadState {
+		NOT_LOADED, LOADING, LOADED
+	}
+
+	public static class NodeObject {
+
+		private Path nodePath;
+		private String nodeName;
+		private String nodeLabel;
+		private LoadState state;
+		// Archive on the disk, its files are virtual nodes
+		private boolean isArchive;
+
+		public NodeObject(Path nodePath, String nodeName, String nodeLabel) {
+			this.nodePath = nodePath;
+			this.nodeName = nodeName;
+			this.nodeLabel = nodeLabel;
+			this.state = LoadState.NOT_LOADED;
+			this.isArchive = false;
+		}
+
+		public NodeObject(Path nodePath, String nodeName) {
+			this(nodePath, nodeName, nodeName);
+		}
+
+		public Path getNodePath() {
+			return nodePath;
+		}
+
+		public String getNodeName() {
+			return nodeName;
+		}
+
+		public boolean isArchive() {
+			return isArchive;
+		}
+
+		@Override
+		public String toString() {
+			return nodeLabel;
+		}
+
+		// Only the path is unique
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof NodeObject) {
+				return ((NodeObject) obj).getNodePath().equals(this.nodePath);
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return nodePath.hashCode();
+		}
+	}
+
+	/**
+	 * Lists one directory (not its sub directories) and creates the nodes of its
+	 * children, then adds them to the tree on the EDT.
+	 */
+	private class DirectoryLoader extends SwingWorker<List<DefaultMutableTreeNode>, Void> {
+
+		private DefaultMutableTreeNode node;
+		private Path dir;
+
+		public DirectoryLoader(DefaultMutableTreeNode node, Path dir) {
+			this.node = node;
+			this.dir = dir;
+		}
+
+		@Override
+		protected List<DefaultMutableTreeNode> doInBackground() throws IOException {
+			// Watched before listing, so nothing is missed in between
+			if (watcher != null) {
+				watcher.watch(dir);
+			}
+
+			List<DefaultMutableTreeNode> children = new ArrayList<DefaultMutableTreeNode>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path path : stream) {
+					boolean isDirectory = Files.isDirectory(path);
+					children.add(createNode(path, getLabel(path, isDirectory), isDirectory,
+							!isDirectory && isArchive(path)));
+				}
+			}
+			children.sort(NODE_ORDER);
+
+			FormatDetector.getInstance().flush();
+			return children;
+		}
+
+		@Override
+		protected void done() {
+			NodeObject nodeObject = (NodeObject) node.getUserObject();
+
+			// Removed from the tree while loading
+			if (node != getRoot() && node.getParent() == null) {
+				if (watcher != null) {
+					watcher.unwatch(dir);
+				}
+				return;
+			}
+
+			// The loading node is always the first one
+			removeNodeFromParent((DefaultMutableTreeNode) node.getChildAt(0));
+
+			List<DefaultMutableTreeNode> children;
+			try {
+				children = get();
+			} catch (InterruptedException | ExecutionException e) {
+				// Expanding again will try again
+				e.printStackTrace();
+				nodeObject.state = LoadState.NOT_LOADED;
+				deferredChanges.remove(node);
+				if (watcher != null) {
+					watcher.unwatch(dir);
+				}
+				return;
+			}
+
+			// Files added while loading (extracted archive...) are replaced by the listed
+			// ones
+			for (int i = node.getChildCount() - 1; i >= 0; i--) {
+				DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+				forget(child);
+				removeNodeFromParent(child);
+			}
+
+			int[] indices = new int[children.size()];
+			for (int i = 0; i < children.size(); i++) {
+				DefaultMutableTreeNode child = children.get(i);
+				node.add(child);
+				nodeMap.put(((NodeObject) child.getUserObject()).getNodePath(), child);
+				indices[i] = i;
+			}
+			nodeObject.state = LoadState.LOADED;
+			nodesWereInserted(node, indices);
+
+			// Changed while listing, maybe already listed but it does not matter
+			List<FileChange> changes = deferredChanges.remove(node);
+			if (changes != null) {
+				for (FileChange change : changes) {
+					applyChange(node, change);
+				}
+			}
+		}
+	}
+
+}
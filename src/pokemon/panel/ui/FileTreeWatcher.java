@@ -0,0 +1,222 @@
+package pokemon.panel.ui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Watches the directories listed in the file tree, to show files changed by
+ * other programs (build scripts...). Only listed directories are watched,
+ * others are up to date when they are listed.
+ * </p>
+ *
+ * <p>
+ * Events come in bursts (extracting an archive creates hundreds of files), so
+ * they are gathered until nothing happens for a short time. Then the state of
+ * each changed path is read once, in the watcher thread, and all changes are
+ * given at once to the listener.
+ * </p>
+ */
+public class FileTreeWatcher implements Closeable {
+
+	// Milliseconds without event before changes are sent
+	private static final long QUIET_DELAY = 200;
+	// Changes are sent at least that often during long bursts
+	private static final long MAX_DELAY = 1000;
+
+	private WatchService watchService;
+	private Map<Path, WatchKey> keys;
+	private Consumer<List<FileChange>> listener;
+
+	/**
+	 * @param listener called from the watcher thread with the changes of a burst
+	 * @throws IOException if the file system cannot be watched
+	 */
+	public FileTreeWatcher(Consumer<List<FileChange>> listener) throws IOException {
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.keys = new ConcurrentHashMap<Path, WatchKey>();
+		this.listener = listener;
+
+		Thread thread = new Thread(this::watchLoop, "File tree watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Starts watching the files of a directory (not its sub directories). Can be
+	 * called from any thread.
+	 *
+	 * @param dir the directory to watch
+	 */
+	public void watch(Path dir) {
+		try {
+			WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			keys.put(dir, key);
+		} catch (IOException | ClosedWatchServiceException e) {
+			// Deleted in the meantime, or closed... Nothing to watch then
+		}
+	}
+
+	public void unwatch(Path dir) {
+		WatchKey key = keys.remove(dir);
+		if (key != null) {
+			key.cancel();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void watchLoop() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+
+				// Gather the burst
+				Set<Path> changedPaths = new LinkedHashSet<Path>();
+				Set<Path> overflowedDirs = new LinkedHashSet<Path>();
+				long deadline = System.currentTimeMillis() + MAX_DELAY;
+				while (key != null) {
+					collectEvents(key, changedPaths, overflowedDirs);
+
+					long delay = Math.min(QUIET_DELAY, deadline - System.currentTimeMillis());
+					key = delay > 0 ? watchService.poll(delay, TimeUnit.MILLISECONDS) : null;
+				}
+
+				List<FileChange> changes = new ArrayList<FileChange>(changedPaths.size());
+				for (Path dir : overflowedDirs) {
+					changes.addAll(listDirectory(dir));
+				}
+				for (Path path : changedPaths) {
+					changes.add(FileChange.read(path));
+				}
+
+				listener.accept(changes);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed, stop watching
+		}
+	}
+
+	private void collectEvents(WatchKey key, Set<Path> changedPaths, Set<Path> overflowedDirs) {
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Events were lost, the whole directory is checked
+				overflowedDirs.add(dir);
+			} else {
+				changedPaths.add(dir.resolve((Path) event.context()));
+			}
+		}
+
+		// Invalid when the directory is deleted, its node is removed with the
+		// delete event of its parent
+		if (!key.reset()) {
+			keys.remove(dir, key);
+		}
+	}
+
+	private static List<FileChange> listDirectory(Path dir) {
+		List<FileChange> changes = new ArrayList<FileChange>();
+		List<Path> children = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path path : stream) {
+				children.add(path);
+				changes.add(FileChange.read(path));
+			}
+		} catch (IOException e) {
+			// Deleted, its parent will tell
+			return changes;
+		}
+
+		changes.add(0, new FileChange(dir, children));
+		return changes;
+	}
+
+	/**
+	 * State of a changed path when the burst ended
+	 */
+	public static class FileChange {
+
+		private Path path;
+		private boolean exists;
+		private boolean isDirectory;
+		private boolean isArchive;
+		private String label;
+		// Whole content of the directory when events were lost, else null
+		private List<Path> children;
+
+		private FileChange(Path path, boolean exists, boolean isDirectory, boolean isArchive, String label) {
+			this.path = path;
+			this.exists = exists;
+			this.isDirectory = isDirectory;
+			this.isArchive = isArchive;
+			this.label = label;
+		}
+
+		private FileChange(Path dir, List<Path> children) {
+			this(dir, true, true, false, dir.getFileName().toString());
+			this.children = children;
+		}
+
+		private static FileChange read(Path path) {
+			boolean isDirectory = Files.isDirectory(path);
+			if (!isDirectory && !Files.exists(path)) {
+				return new FileChange(path, false, false, false, null);
+			}
+
+			// The label may read the file, better here than in the EDT
+			return new FileChange(path, true, isDirectory, !isDirectory && FileTreeModel.isArchive(path),
+					FileTreeModel.getLabel(path, isDirectory));
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		public boolean exists() {
+			return exists;
+		}
+
+		public boolean isDirectory() {
+			return isDirectory;
+		}
+
+		public boolean isArchive() {
+			return isArchive;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * @return all files of the directory, or null if this is not the listing of a
+		 *         directory which lost events
+		 */
+		public List<Path> getChildren() {
+			return children;
+		}
+	}
+
+}
@@ -28,6 +28,7 @@ public class GraphicResourcesPanel extends JPanel {
 		// - Left -> The file tree from the root
 		// - Center -> Area for internal frames
 		// - Right -> Properties
+		// And the extraction progress at the bottom, only while extracting
 
 		JPanel treePanel = new TreeFilePanel(new File(projectDirPath));
 		JScrollPane scrollTreePanel = new JScrollPane(treePanel);
@@ -48,6 +49,7 @@ public class GraphicResourcesPanel extends JPanel {
 		editorPropertiesPane.setBackground(Color.white);
 		
 		this.add(editorPropertiesPane);
+		this.add(new ExtractionProgressBar(), BorderLayout.SOUTH);
 	}
 
 }
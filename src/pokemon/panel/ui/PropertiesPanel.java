@@ -12,6 +12,7 @@ import javax.swing.border.EmptyBorder;
 
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
 import pokemon.event.palette.PaletteOpenedEvent;
 import pokemon.event.tile.TileOpenedEvent;
 import pokemon.panel.ui.properties.PalettePropertiesPanel;
@@ -62,7 +63,7 @@ public class PropertiesPanel extends JPanel {
 		this.repaint();
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteOpened(PaletteOpenedEvent event) {
 		// Cannot create twice the same properties
 		if (!openProperties.containsKey(event.getPaletteName())) {
@@ -73,7 +74,7 @@ public class PropertiesPanel extends JPanel {
 		}
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onTileOpened(TileOpenedEvent event) {
 		// Cannot create twice the same properties
 		if (!openProperties.containsKey(event.getTileName())) {
@@ -0,0 +1,220 @@
+package pokemon.panel.ui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+import pokemon.files.DetectedFormat;
+import pokemon.files.FormatDetector;
+import pokemon.files.FormatEnum;
+import pokemon.files.archive.MappedNARC;
+import pokemon.files.archive.MappedROM;
+
+/**
+ * <p>
+ * Tree of the files of a ROM, read in the mapped ROM so nothing is extracted.
+ * Its nodes are also used by {@link FileTreeModel} for the archives on the
+ * disk.
+ * Nodes are virtual: their path is the path the file would have if the ROM was
+ * extracted next to it, and they hold the content of the file (a slice of the
+ * ROM).
+ * </p>
+ *
+ * <p>
+ * Archives are shown as directories, their tables are only read when they are
+ * expanded. Like {@link FileTreeModel}, children are created on the first
+ * expansion and sorted directories first. Everything is in memory, so there is
+ * no background loading.
+ * </p>
+ *
+ * <p>
+ * Must be used from the EDT only, like any tree model.
+ * </p>
+ */
+public class RomTreeModel extends DefaultTreeModel implements TreeWillExpandListener {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2735911720498861392L;
+
+	public RomTreeModel(Path romPath, MappedROM rom) {
+		super(new DefaultMutableTreeNode(new VirtualNodeObject(romPath, romPath.getFileName().toString(),
+				"%s (%s, %s)".formatted(romPath.getFileName(), rom.getTitle(), rom.getGameCode()), null,
+				VirtualDir.of(rom)), true), true);
+	}
+
+	@Override
+	public void treeWillExpand(TreeExpansionEvent event) {
+		loadChildren((DefaultMutableTreeNode) event.getPath().getLastPathComponent());
+	}
+
+	@Override
+	public void treeWillCollapse(TreeExpansionEvent event) {
+		// Children are kept
+	}
+
+	/**
+	 * Creates the children of a directory or an archive if it has not been done
+	 * yet
+	 *
+	 * @param node the directory or archive node
+	 */
+	public void loadChildren(DefaultMutableTreeNode node) {
+		if (node.getUserObject() instanceof VirtualNodeObject nodeObject) {
+			insertChildren(this, node, createChildren(nodeObject));
+		}
+	}
+
+	static void insertChildren(DefaultTreeModel model, DefaultMutableTreeNode node,
+			List<DefaultMutableTreeNode> children) {
+		int[] indices = new int[children.size()];
+		for (int i = 0; i < children.size(); i++) {
+			node.add(children.get(i));
+			indices[i] = i;
+		}
+		model.nodesWereInserted(node, indices);
+	}
+
+	/**
+	 * Creates the children of a virtual directory or archive, once
+	 *
+	 * @param nodeObject the directory or archive
+	 * @return its children, none if they were already created
+	 */
+	static List<DefaultMutableTreeNode> createChildren(VirtualNodeObject nodeObject) {
+		if (nodeObject.isLoaded) {
+			return List.of();
+		}
+		nodeObject.isLoaded = true;
+
+		VirtualDir dir = nodeObject.dir;
+		if (dir == null) {
+			// An archive, its files are slices of its content
+			try (MappedNARC narc = new MappedNARC(nodeObject.content, nodeObject.getNodeName())) {
+				dir = VirtualDir.of(narc);
+			} catch (IOException e) {
+				// Broken archive, shown empty
+				e.printStackTrace();
+				return List.of();
+			}
+		}
+
+		return createChildren(nodeObject.getNodePath(), dir);
+	}
+
+	/**
+	 * Creates the nodes of the files of an archive on the disk. They are virtual
+	 * like the files of a ROM, so nothing is extracted.
+	 *
+	 * @param archivePath the archive file
+	 * @param narc        the mapped archive, its slices stay valid once closed
+	 * @return the children of the archive node
+	 */
+	static List<DefaultMutableTreeNode> createChildren(Path archivePath, MappedNARC narc) {
+		return createChildren(archivePath, VirtualDir.of(narc));
+	}
+
+	private static List<DefaultMutableTreeNode> createChildren(Path dirPath, VirtualDir dir) {
+		List<DefaultMutableTreeNode> children = new ArrayList<DefaultMutableTreeNode>();
+		for (Map.Entry<String, VirtualDir> subDir : dir.dirs.entrySet()) {
+			String name = subDir.getKey();
+			children.add(new DefaultMutableTreeNode(
+					new VirtualNodeObject(dirPath.resolve(name), name, name, null, subDir.getValue()), true));
+		}
+
+		for (Map.Entry<String, ByteBuffer> file : dir.files.entrySet()) {
+			String name = file.getKey();
+			ByteBuffer content = file.getValue();
+
+			// Only the header is read, and it is already in memory
+			DetectedFormat format = FormatDetector.detect(content);
+			boolean isArchive = format.getFormat() == FormatEnum.ARCHIVE && !format.isCompressed();
+			String label = FileTreeModel.getLabel(name, format);
+			children.add(new DefaultMutableTreeNode(
+					new VirtualNodeObject(dirPath.resolve(name), name, label, content, null), isArchive));
+		}
+
+		children.sort(FileTreeModel.NODE_ORDER);
+		return children;
+	}
+
+	/**
+	 * A file or a directory of the ROM, or of an archive in the ROM
+	 */
+	public static class VirtualNodeObject extends FileTreeModel.NodeObject {
+
+		// Null for directories
+		private ByteBuffer content;
+		// Null for files and archives
+		private VirtualDir dir;
+		private boolean isLoaded;
+
+		private VirtualNodeObject(Path nodePath, String nodeName, String nodeLabel, ByteBuffer content,
+				VirtualDir dir) {
+			super(nodePath, nodeName, nodeLabel);
+			this.content = content;
+			this.dir = dir;
+			this.isLoaded = false;
+		}
+
+		/**
+		 * @return the content of the file, a slice of the mapped ROM (null for
+		 *         directories)
+		 */
+		public ByteBuffer getContent() {
+			return content == null ? null : content.duplicate().order(content.order());
+		}
+	}
+
+	/**
+	 * Files and directories of a directory, built from the paths of a ROM or of an
+	 * archive
+	 */
+	private static class VirtualDir {
+
+		private Map<String, VirtualDir> dirs;
+		private Map<String, ByteBuffer> files;
+
+		private VirtualDir() {
+			this.dirs = new HashMap<String, VirtualDir>();
+			this.files = new HashMap<String, ByteBuffer>();
+		}
+
+		private static VirtualDir of(MappedROM rom) {
+			VirtualDir root = new VirtualDir();
+			for (int fileId = 0; fileId < rom.getFileNumber(); fileId++) {
+				root.add(rom.getFilePath(fileId), rom.getFile(fileId));
+			}
+			return root;
+		}
+
+		private static VirtualDir of(MappedNARC narc) {
+			VirtualDir root = new VirtualDir();
+			for (int fileIndex = 0; fileIndex < narc.getFileNumber(); fileIndex++) {
+				root.add(narc.getFilePath(fileIndex), narc.getFile(fileIndex));
+			}
+			return root;
+		}
+
+		private void add(String path, ByteBuffer content) {
+			int slashIndex = path.indexOf('/');
+			if (slashIndex == -1) {
+				files.put(path, content);
+			} else {
+				dirs.computeIfAbsent(path.substring(0, slashIndex), _ -> new VirtualDir())
+						.add(path.substring(slashIndex + 1), content);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package pokemon.panel.ui.popup;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+
+import pokemon.event.Event;
+import pokemon.event.EventManager;
+import pokemon.event.ui.ArchiveExtractionRequestedEvent;
+import pokemon.event.ui.FileDeletedEvent;
+
+public class ArchivePopup extends JPopupMenu {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -1523389340927167460L;
+
+	public ArchivePopup(Path archivePath) {
+		// Files are browsed in the tree, extracting is only needed to edit them
+		JMenuItem extractItem = new JMenuItem("Extract all");
+		extractItem.addActionListener(_ -> extract(archivePath.toFile()));
+		this.add(extractItem);
+	}
+
+	private static void extract(File archiveFile) {
+		// Check if the destination folder does not exist...
+		String archiveName = archiveFile.getName();
+		int lastPointIndex = archiveName.lastIndexOf('.');
+		String baseName = lastPointIndex == -1 ? archiveName : archiveName.substring(0, lastPointIndex);
+		File destDir = new File(archiveFile.getParentFile(), baseName);
+		File deletedDir = null;
+		if (destDir.exists()) {
+			int answer = JOptionPane.showConfirmDialog(null,
+					"The extracted folder already exist... Do you want to override it?", "Destination exists",
+					JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+
+			if (answer != JOptionPane.YES_OPTION) {
+				return;
+			}
+
+			// Notify deleted directory, it is deleted with the extraction
+			Event archiveDirectoryDeleted = new FileDeletedEvent(destDir);
+			EventManager.getInstance().throwEvent(archiveDirectoryDeleted);
+			deletedDir = destDir;
+		}
+
+		// Extract archive in background, the UI is notified when it is done
+		EventManager.getInstance().throwEvent(new ArchiveExtractionRequestedEvent(archiveFile, deletedDir));
+	}
+
+}
@@ -3,6 +3,7 @@ package pokemon.panel.ui.properties;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.nio.file.Path;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
@@ -13,6 +14,7 @@ import javax.swing.SwingConstants;
 
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
 import pokemon.event.palette.PaletteSelectedEvent;
 import pokemon.files.graphics.GraphicResources.ColorBitDepth;
 import pokemon.logic.Palette;
@@ -46,7 +48,8 @@ public class PalettePropertiesPanel extends FormatProperties {
 	 */
 	public PalettePropertiesPanel(String paletteName, Palette palette, boolean isPaletteSelected) {
 		this.paletteName = paletteName;
-		this.setBorder(BorderFactory.createTitledBorder(paletteName));
+		// Named by the path of the file, only its name is shown
+		this.setBorder(BorderFactory.createTitledBorder(Path.of(paletteName).getFileName().toString()));
 
 		// Check if 4 bits depth
 		boolean isFourBitsDepth = palette.getBitDepth() == ColorBitDepth.FOUR_BIT_DEPTH.getBitDepthValue();
@@ -96,7 +99,7 @@ public class PalettePropertiesPanel extends FormatProperties {
 		EventManager.getInstance().registerListener(this);
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onPaletteSelected(PaletteSelectedEvent event) {
 		paletteSelectionButton.setEnabled(!paletteName.equals(event.getPaletteName()));
 		repaint();
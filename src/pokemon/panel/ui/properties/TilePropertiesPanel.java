@@ -3,6 +3,7 @@ package pokemon.panel.ui.properties;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.nio.file.Path;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
@@ -15,6 +16,7 @@ import javax.swing.SwingConstants;
 
 import pokemon.event.EventListener;
 import pokemon.event.EventManager;
+import pokemon.event.ListenerThread;
 import pokemon.event.tile.TileSelectedEvent;
 import pokemon.event.ui.TilePropertiesChangedEvent;
 import pokemon.event.ui.TilePropertiesChangedEvent.ChangedProperty;
@@ -59,7 +61,8 @@ public class TilePropertiesPanel extends FormatProperties {
 			boolean isTileSelected) {
 		this.tileName = tileName;
 
-		this.setBorder(BorderFactory.createTitledBorder(tileName));
+		// Named by the path of the file, only its name is shown
+		this.setBorder(BorderFactory.createTitledBorder(Path.of(tileName).getFileName().toString()));
 		this.setLayout(new GridBagLayout());
 
 		GridBagConstraints c = new GridBagConstraints();
@@ -95,43 +98,43 @@ public class TilePropertiesPanel extends FormatProperties {
 			usedPaletteList.setModel(EIGHT_BITS_MODEL);
 		}
 		usedPaletteList
-				.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+				.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 						ChangedProperty.SELECTED_PALETTE, usedPaletteList.getSelectedIndex())));
 
 		JLabel zoomLabel = new JLabel("Zoom", SwingConstants.LEFT);
 		zoomList = new JComboBox<Integer>(new Integer[] { 1, 2, 3, 4, 5 });
-		zoomList.addActionListener(_ -> EventManager.getInstance().throwEvent(
+		zoomList.addActionListener(_ -> EventManager.getInstance().postEvent(
 				new TilePropertiesChangedEvent(tileName, ChangedProperty.ZOOM, (int) zoomList.getSelectedItem())));
 		zoomList.setSelectedIndex(2);
 
 		JLabel tilesInRowLabel = new JLabel("Tiles in a row", SwingConstants.LEFT);
 		JFormattedTextField tilesInRow = new JFormattedTextField();
-		tilesInRow.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+		tilesInRow.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 				ChangedProperty.TILE_X, Integer.valueOf(tilesInRow.getText()))));
 		tilesInRow.setValue(tileX);
 
 		JLabel tilesInColumnLabel = new JLabel("Tiles in a column", SwingConstants.LEFT);
 		JFormattedTextField tilesInColumn = new JFormattedTextField();
 		tilesInColumn
-				.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+				.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 						ChangedProperty.TILE_Y, Integer.valueOf(tilesInColumn.getText()))));
 		tilesInColumn.setValue(tileY);
 
 		JCheckBox transparentBackground = new JCheckBox("Set transparent background");
 		transparentBackground
-				.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+				.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 						ChangedProperty.TRANSPARENT_BG, transparentBackground.isSelected() ? 0 : 1)));
 		transparentBackground.setSelected(true);
 
 		JCheckBox showTileGrid = new JCheckBox("Show tile grid");
 		showTileGrid
-				.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+				.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 						ChangedProperty.SHOW_TILE_GRID, showTileGrid.isSelected() ? 1 : 0)));
 		showTileGrid.setSelected(true);
 
 		JCheckBox showPixelGrid = new JCheckBox("Show pixel grid");
 		showPixelGrid
-				.addActionListener(_ -> EventManager.getInstance().throwEvent(new TilePropertiesChangedEvent(tileName,
+				.addActionListener(_ -> EventManager.getInstance().postEvent(new TilePropertiesChangedEvent(tileName,
 						ChangedProperty.SHOW_PIXEL_GRID, showPixelGrid.isSelected() ? 1 : 0)));
 		showPixelGrid.setSelected(false);
 
@@ -149,7 +152,7 @@ public class TilePropertiesPanel extends FormatProperties {
 		EventManager.getInstance().registerListener(this);
 	}
 
-	@EventListener
+	@EventListener(thread = ListenerThread.EDT)
 	public void onTileSelected(TileSelectedEvent event) {
 		useButton.setEnabled(!event.getTileName().equals(tileName));
 	}